@@ -25,6 +25,11 @@ public BlockLedger() throws IOException {
             // Clear the ledger file for new processing
             new PrintWriter("Program_Files/lastblockledger.log").close();
             processBlockFile();
+            
+            // Speculatively start the block signature in case the local player mined it
+            if (new File("Program_Files/lastblockledger.log").length() > 0) {
+                BlockSignaturePrecomputer.start();
+            }
         }
     }
     
@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merkle tree commitment over the block entries MakeLedger appends, kept next to
+ * the legacy flat ledger hash.
+ *
+ * The tree follows RFC 6962: leaf = SHA-256(0x00 || entry), node =
+ * SHA-256(0x01 || left || right), and the left subtree of an n-leaf tree holds
+ * the largest power of two below n. Only the frontier (one perfect subtree root
+ * per set bit of the leaf count) is needed to append a block and derive the root,
+ * so each block costs O(log n). Leaf hashes are kept in block_leaves.bin so an
+ * inclusion proof can be produced for any block.
+ *
+ * Leaves are only appended, so the tree before a block is its leaf count and
+ * frontier then. mark() keeps the last RING_SIZE of those in
+ * block_merkle_MARKS.log, the same ring LedgerCheckpoint keeps for the ledger.
+ */
+public class BlockMerkleTree {
+
+    private static final Path LEAVES_PATH = Paths.get("ledger_KMC/block_leaves.bin");
+    private static final Path FRONTIER_PATH = Paths.get("ledger_KMC/block_merkle.log");
+    private static final Path ROOT_PATH = Paths.get("ledger_KMC/block_merkle_ROOT.log");
+    private static final Path MARKS_PATH = Paths.get("ledger_KMC/block_merkle_MARKS.log");
+    private static final Path MARKS_TEMP_PATH = Paths.get("ledger_KMC/block_merkle_MARKS.log.tmp");
+    private static final Path LEDGER_CURRENT_PATH = Paths.get("ledger_KMC/ledger_current.txt");
+
+    private static final int HASH_BYTES = HashChain.HASH_BYTES;
+    private static final int RING_SIZE = 10;
+
+    private final MessageDigest digest = HashChain.newDigest();
+    private long leafCount;
+    // Perfect subtree roots, largest first
+    private final List<byte[]> frontier = new ArrayList<>();
+
+    private BlockMerkleTree() {
+    }
+
+    /**
+     * Adds one block entry as the next leaf and publishes the new root
+     */
+    public static synchronized void appendBlock(String ledgerEntry) {
+        try {
+            BlockMerkleTree tree = load();
+            byte[] leaf = tree.leafHash(ledgerEntry.getBytes(StandardCharsets.UTF_8));
+
+            try (FileChannel channel = FileChannel.open(LEAVES_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(leaf), tree.leafCount * HASH_BYTES);
+            }
+            tree.push(leaf);
+            tree.save();
+            tree.publishRoot();
+        } catch (IOException e) {
+            System.err.println("Error updating block Merkle tree: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the leaf count and frontier before a block is applied
+     */
+    public static synchronized void mark() throws IOException {
+        List<String> marks = readMarks();
+        marks.add(load().frontierLine());
+        while (marks.size() > RING_SIZE) {
+            marks.remove(0);
+        }
+        writeMarks(marks);
+    }
+
+    /**
+     * Cuts the tree back to its leaves at the blocks-th most recent mark.
+     * Returns false, leaving the tree alone, if there is no such mark or it
+     * holds more leaves than are stored.
+     */
+    public static synchronized boolean rewind(int blocks) throws IOException {
+        List<String> marks = readMarks();
+        if (blocks < 1 || marks.size() < blocks) {
+            System.err.println("Block Merkle tree has " + marks.size() + " marks, cannot rewind " + blocks + " blocks");
+            return false;
+        }
+
+        int index = marks.size() - blocks;
+        BlockMerkleTree tree = parse(marks.get(index));
+        long storedLeaves = Files.exists(LEAVES_PATH) ? Files.size(LEAVES_PATH) / HASH_BYTES : 0;
+        if (tree.leafCount < 0 || tree.leafCount > storedLeaves) {
+            System.err.println("Invalid block Merkle mark: " + marks.get(index));
+            return false;
+        }
+
+        // Frontier first: leaves past its count are ignored and overwritten by the next append
+        tree.save();
+        try (FileChannel channel = FileChannel.open(LEAVES_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(tree.leafCount * HASH_BYTES);
+        }
+        tree.publishRoot();
+
+        // Keep the mark rewound to, so rewinding again without a new block changes nothing
+        writeMarks(new ArrayList<>(marks.subList(0, index + 1)));
+        return true;
+    }
+
+    /**
+     * Rewinds the tree along with a ledger rewind, rebuilding it from
+     * ledger_current.txt if it has no usable mark. The tree is derived from the
+     * ledger, so a failure here is only logged and never stops the caller's recovery.
+     */
+    public static synchronized void rewindWithLedger(int blocks) {
+        try {
+            if (!rewind(blocks)) {
+                rebuildFromLedger();
+            }
+        } catch (IOException e) {
+            System.err.println("Error rewinding block Merkle tree: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the tree with one built from the block entries in ledger_current.txt,
+     * for when the ledger was swapped for one that is not an append of the old one.
+     *
+     * Every block in the ledger is MakeLedger's entry, then Top100Processor's
+     * transaction entries (all seven field delimiters, ending in ';'), then
+     * AppendCHash's "=hash ", so the entry is what precedes the block's trailing
+     * transaction entries. Marks from the old history are dropped.
+     */
+    public static synchronized void rebuildFromLedger() throws IOException {
+        byte[] ledger = Files.exists(LEDGER_CURRENT_PATH) ? Files.readAllBytes(LEDGER_CURRENT_PATH) : new byte[0];
+        BlockMerkleTree tree = new BlockMerkleTree();
+        TransactionLine tx = new TransactionLine();
+
+        // Without a frontier, a crash part way through rebuilds from whatever leaves were written
+        Files.deleteIfExists(FRONTIER_PATH);
+        try (FileChannel leaves = FileChannel.open(LEAVES_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int blockStart = 0;
+            int entryEnd = -1;
+            int i = 0;
+            while (i < ledger.length) {
+                if (ledger[i] == ' ') {
+                    i++;
+                    continue;
+                }
+                int end = i;
+                while (end < ledger.length && ledger[end] != ' ') {
+                    end++;
+                }
+
+                if (ledger[i] == '=') {
+                    tree.appendEntry(leaves, ledger, blockStart, entryEnd < 0 ? i : entryEnd);
+                    blockStart = Math.min(end + 1, ledger.length);
+                    entryEnd = -1;
+                } else if (ledger[end - 1] == ';'
+                        && tx.reset(new String(ledger, i, end - i, StandardCharsets.ISO_8859_1)).hasFieldDelimiters()) {
+                    if (entryEnd < 0) {
+                        entryEnd = i;
+                    }
+                } else {
+                    // Not trailing after all, so part of the entry
+                    entryEnd = -1;
+                }
+                i = end;
+            }
+            // A block whose consensus hash was never appended
+            tree.appendEntry(leaves, ledger, blockStart, entryEnd < 0 ? ledger.length : entryEnd);
+        }
+
+        tree.save();
+        tree.publishRoot();
+        writeMarks(new ArrayList<>());
+        System.out.println("Block Merkle tree rebuilt from ledger: " + tree.leafCount + " blocks");
+    }
+
+    /**
+     * Current root as hex, or an empty string before the first block
+     */
+    public static synchronized String rootHex() throws IOException {
+        BlockMerkleTree tree = load();
+        return tree.leafCount == 0 ? "" : HashChain.toHex(tree.root());
+    }
+
+    public static synchronized long size() throws IOException {
+        return load().leafCount;
+    }
+
+    /**
+     * Audit path for the leaf at index in the current tree, bottom-up
+     */
+    public static synchronized List<byte[]> inclusionProof(long index) throws IOException {
+        BlockMerkleTree tree = load();
+        if (index < 0 || index >= tree.leafCount) {
+            throw new IllegalArgumentException("No block at index " + index);
+        }
+
+        List<byte[]> proof = new ArrayList<>();
+        try (FileChannel leaves = FileChannel.open(LEAVES_PATH, StandardOpenOption.READ)) {
+            tree.path(leaves, index, 0, tree.leafCount, proof);
+        }
+        return proof;
+    }
+
+    /**
+     * Checks an inclusion proof for a block entry against a published root
+     */
+    public static boolean verifyInclusion(String ledgerEntry, long index, long treeSize, List<byte[]> proof, byte[] root) {
+        if (index < 0 || index >= treeSize) {
+            return false;
+        }
+
+        BlockMerkleTree hasher = new BlockMerkleTree();
+        byte[] node = hasher.leafHash(ledgerEntry.getBytes(StandardCharsets.UTF_8));
+        long fn = index;
+        long sn = treeSize - 1;
+
+        for (byte[] sibling : proof) {
+            if (sn == 0) {
+                return false;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                node = hasher.nodeHash(sibling, node);
+                if ((fn & 1) == 0) {
+                    while ((fn & 1) == 0 && fn != 0) {
+                        fn >>= 1;
+                        sn >>= 1;
+                    }
+                }
+            } else {
+                node = hasher.nodeHash(node, sibling);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+        return sn == 0 && Arrays.equals(node, root);
+    }
+
+    private static BlockMerkleTree load() throws IOException {
+        long storedLeaves = Files.exists(LEAVES_PATH) ? Files.size(LEAVES_PATH) / HASH_BYTES : 0;
+        BlockMerkleTree tree = Files.exists(FRONTIER_PATH)
+                ? parse(Files.readString(FRONTIER_PATH, StandardCharsets.US_ASCII))
+                : new BlockMerkleTree();
+        if (!Files.exists(FRONTIER_PATH)) {
+            tree.leafCount = -1;
+        }
+
+        // A crash between the leaf write and the frontier write leaves them out of step
+        if (tree.leafCount < 0 || tree.leafCount > storedLeaves) {
+            if (storedLeaves > 0) {
+                System.err.println("Block Merkle frontier out of step with leaves, rebuilding");
+            }
+            tree.rebuild(storedLeaves);
+        }
+        return tree;
+    }
+
+    /**
+     * Frontier as written to block_merkle.log, leafCount -1 if it does not parse
+     */
+    private static BlockMerkleTree parse(String text) {
+        BlockMerkleTree tree = new BlockMerkleTree();
+        String[] parts = text.trim().split(" ");
+        try {
+            tree.leafCount = Long.parseLong(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                tree.frontier.add(decodeHex(parts[i]));
+            }
+        } catch (NumberFormatException e) {
+            tree.leafCount = -1;
+        }
+        if (tree.leafCount >= 0 && tree.frontier.size() != Long.bitCount(tree.leafCount)) {
+            tree.leafCount = -1;
+        }
+        return tree;
+    }
+
+    private void rebuild(long count) throws IOException {
+        leafCount = 0;
+        frontier.clear();
+        if (count == 0) {
+            return;
+        }
+
+        try (FileChannel leaves = FileChannel.open(LEAVES_PATH, StandardOpenOption.READ)) {
+            for (long i = 0; i < count; i++) {
+                push(readLeaf(leaves, i));
+            }
+        }
+        save();
+    }
+
+    private void appendEntry(FileChannel leaves, byte[] ledger, int from, int to) throws IOException {
+        if (to <= from) {
+            return;
+        }
+        digest.update((byte) 0x00);
+        digest.update(ledger, from, to - from);
+        byte[] leaf = digest.digest();
+        leaves.write(ByteBuffer.wrap(leaf), leafCount * HASH_BYTES);
+        push(leaf);
+    }
+
+    private void push(byte[] leaf) {
+        byte[] node = leaf;
+        for (long n = leafCount; (n & 1) == 1; n >>= 1) {
+            node = nodeHash(frontier.remove(frontier.size() - 1), node);
+        }
+        frontier.add(node);
+        leafCount++;
+    }
+
+    private byte[] root() {
+        byte[] acc = frontier.get(frontier.size() - 1);
+        for (int i = frontier.size() - 2; i >= 0; i--) {
+            acc = nodeHash(frontier.get(i), acc);
+        }
+        return acc;
+    }
+
+    private void save() throws IOException {
+        Files.writeString(FRONTIER_PATH, frontierLine(), StandardCharsets.US_ASCII);
+    }
+
+    private void publishRoot() throws IOException {
+        Files.writeString(ROOT_PATH, leafCount == 0 ? "" : HashChain.toHex(root()), StandardCharsets.UTF_8);
+    }
+
+    private String frontierLine() {
+        StringBuilder sb = new StringBuilder().append(leafCount);
+        for (byte[] node : frontier) {
+            sb.append(' ').append(HashChain.toHex(node));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> readMarks() throws IOException {
+        List<String> marks = new ArrayList<>();
+        if (Files.exists(MARKS_PATH)) {
+            for (String line : Files.readAllLines(MARKS_PATH, StandardCharsets.US_ASCII)) {
+                if (!line.isEmpty()) {
+                    marks.add(line);
+                }
+            }
+        }
+        return marks;
+    }
+
+    private static void writeMarks(List<String> marks) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String mark : marks) {
+            sb.append(mark).append('\n');
+        }
+        Files.writeString(MARKS_TEMP_PATH, sb.toString(), StandardCharsets.US_ASCII);
+        Files.move(MARKS_TEMP_PATH, MARKS_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * RFC 6962 PATH(m, D[from:to]), appended bottom-up
+     */
+    private void path(FileChannel leaves, long m, long from, long to, List<byte[]> proof) throws IOException {
+        long n = to - from;
+        if (n <= 1) {
+            return;
+        }
+        long k = Long.highestOneBit(n - 1);
+        if (m < k) {
+            path(leaves, m, from, from + k, proof);
+            proof.add(subtreeHash(leaves, from + k, to));
+        } else {
+            path(leaves, m - k, from + k, to, proof);
+            proof.add(subtreeHash(leaves, from, from + k));
+        }
+    }
+
+    private byte[] subtreeHash(FileChannel leaves, long from, long to) throws IOException {
+        long n = to - from;
+        if (n == 1) {
+            return readLeaf(leaves, from);
+        }
+        long k = Long.highestOneBit(n - 1);
+        return nodeHash(subtreeHash(leaves, from, from + k), subtreeHash(leaves, from + k, to));
+    }
+
+    private static byte[] readLeaf(FileChannel leaves, long index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BYTES);
+        while (buffer.hasRemaining()) {
+            if (leaves.read(buffer, index * HASH_BYTES + buffer.position()) <= 0) {
+                throw new IOException("Block leaf " + index + " missing");
+            }
+        }
+        return buffer.array();
+    }
+
+    private byte[] leafHash(byte[] entry) {
+        digest.update((byte) 0x00);
+        digest.update(entry);
+        return digest.digest();
+    }
+
+    private byte[] nodeHash(byte[] left, byte[] right) {
+        digest.update((byte) 0x01);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private static byte[] decodeHex(String hex) {
+        if (hex.length() != HASH_BYTES * 2) {
+            throw new NumberFormatException("Bad node hash length");
+        }
+        byte[] out = new byte[HASH_BYTES];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new NumberFormatException("Bad node hash");
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+}
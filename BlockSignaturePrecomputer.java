@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Speculatively computes the 2002-step WhoIs block signature in the background.
+ *
+ * BlockLedger starts the chain as soon as lastblockledger.log holds the new block
+ * number, PlayerLedger cancels it when the block was mined by someone else, and
+ * WhoIs picks up the finished hash instead of walking the chain on the critical
+ * path before the chat paste.
+ */
+public class BlockSignaturePrecomputer {
+
+    private static final int HASH_ITERATIONS = 2002;
+    private static final Path BLOCK_LEDGER_PATH = Paths.get("Program_Files/lastblockledger.log");
+    private static final Path PRIVATE_KEY_PATH = Paths.get("privatekey.txt");
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "block-signature");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static Pending pending;
+
+    private BlockSignaturePrecomputer() {
+    }
+
+    /**
+     * Starts hashing lastblockledger.log + privatekey.txt for the block just detected
+     */
+    public static synchronized void start() {
+        try {
+            String seed = Files.readString(BLOCK_LEDGER_PATH) + Files.readString(PRIVATE_KEY_PATH);
+            if (pending != null && pending.seed.equals(seed)) {
+                return;
+            }
+            cancel();
+
+            long detectedAt = System.nanoTime();
+            pending = new Pending(seed, detectedAt, EXECUTOR.submit(() -> {
+                String hash = HashChain.iterate(seed, HASH_ITERATIONS);
+                System.out.println("Block signature ready " + (System.nanoTime() - detectedAt) / 1_000_000
+                        + " ms after block detection");
+                return hash;
+            }));
+        } catch (IOException e) {
+            System.err.println("Error starting block signature precomputation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the speculative result, e.g. when the block belongs to another player
+     */
+    public static synchronized void cancel() {
+        if (pending != null) {
+            pending.future.cancel(true);
+            pending = null;
+        }
+    }
+
+    /**
+     * Returns the block signature for the given seed, using the precomputed chain
+     * when it was started for exactly this seed and computing it inline otherwise
+     */
+    public static String take(String seed) {
+        Pending current;
+        synchronized (BlockSignaturePrecomputer.class) {
+            current = pending;
+            pending = null;
+        }
+
+        if (current != null && current.seed.equals(seed)) {
+            long waitStart = System.nanoTime();
+            try {
+                String hash = current.future.get();
+                System.out.println("Block signature picked up " + (System.nanoTime() - current.detectedAt) / 1_000_000
+                        + " ms after block detection (waited " + (System.nanoTime() - waitStart) / 1_000_000 + " ms)");
+                return hash;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Block signature precomputation failed: " + e.getMessage());
+            }
+        } else if (current != null) {
+            current.future.cancel(true);
+        }
+
+        return HashChain.iterate(seed, HASH_ITERATIONS);
+    }
+
+    private static class Pending {
+        final String seed;
+        final long detectedAt;
+        final Future<String> future;
+
+        Pending(String seed, long detectedAt, Future<String> future) {
+            this.seed = seed;
+            this.detectedAt = detectedAt;
+            this.future = future;
+        }
+    }
+}
@@ -13,16 +13,14 @@ public class BlockchainSyncChecker {
     private static final String LAST_BLOCK_HASH = "Program_Files/lastblockhash.log";
     private static final String LAST_BLOCK = "Program_Files/lastblock.log";
     private static final String RESYNC_LOG = "Program_Files/resync.log";
-    private static final String LEDGER_CURRENT = "ledger_KMC/ledger_current.txt";
-    private static final String LEDGER_CURRENT_COPY = "ledger_KMC/ledger_currentCOPY.txt";
-    private static final String PLAYER_INFO = "ledger_KMC/player_info.log";
-    private static final String PLAYER_INFO_COPY = "ledger_KMC/player_infoCOPY.log";
     private static final String LATEST_TXS = "Program_Files/latestTxs.log";
     private static final String DISCORD_C = "discordC.txt";
     private static final String CONSENSUS_HASH = "ledger_KMC/consensus_HASH.log";
     
     private static final int CONSENSUS_THRESHOLD = 2;
     
+    private final TransactionLine txLine = new TransactionLine();
+    
     public BlockchainSyncChecker() throws IOException {
         performSyncCheck();
     }
@@ -115,9 +113,19 @@ public class BlockchainSyncChecker {
     private void handleMalformedBlock(BlockData blockData) throws IOException {
         System.out.println("Restoring from backup files...");
         
-        // Restore from backup files
-        copyFile(LEDGER_CURRENT_COPY, LEDGER_CURRENT);
-        copyFile(PLAYER_INFO_COPY, PLAYER_INFO);
+        // Restore from backup files; the block must not be re-applied on an un-rewound ledger.
+        // Both rewinds are checked before either is applied, so a refusal leaves the state whole
+        if (!LedgerCheckpoint.canRewind(1) || !PlayerStateStore.canRollback(1)) {
+            throw new IOException("Cannot restore the state before the block");
+        }
+        if (!LedgerCheckpoint.rewind(1)) {
+            throw new IOException("Could not rewind ledger");
+        }
+        LedgerCurrentDigest.invalidate();
+        if (!PlayerStateStore.rollback(1)) {
+            throw new IOException("Could not roll back player info");
+        }
+        BlockMerkleTree.rewindWithLedger(1);
         
         updateBlockLedgerFiles(blockData);
         writeToFile(RESYNC_LOG, "x", true);
@@ -167,23 +175,12 @@ public class BlockchainSyncChecker {
     }
     
     private String findPlayerByWallet(String walletAddress) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PLAYER_INFO))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String playerName = line;
-                String nextLine = reader.readLine();
-                
-                if (nextLine != null && nextLine.equals("@" + walletAddress)) {
-                    return playerName;
-                }
-            }
-        }
-        return null;
+        PlayerStateStore.Player player = PlayerStateStore.byWallet("@" + walletAddress);
+        return player != null ? player.name : null;
     }
     
     private boolean containsTransactionMarkers(String line) {
-        return line.contains("&") && line.contains("_") && 
-               line.contains(",") && line.contains("$");
+        return txLine.reset(line).hasTransferDelimiters();
     }
     
     public void rebuildTransactions() throws IOException {
@@ -222,17 +219,6 @@ public class BlockchainSyncChecker {
         }
     }
     
-    private void copyFile(String sourcePath, String targetPath) throws IOException {
-        try {
-            Files.copy(Paths.get(sourcePath), Paths.get(targetPath), 
-                      StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("File copied successfully: " + sourcePath + " -> " + targetPath);
-        } catch (IOException e) {
-            System.err.println("Error copying file: " + e.getMessage());
-            throw e;
-        }
-    }
-    
     private void clearFiles(String... filePaths) throws IOException {
         for (String filePath : filePaths) {
             try {
@@ -167,16 +167,24 @@ System.out.println("ledger= " + ledger);
         try {
             System.out.println("[BLOCK] Player received last block but it was written incorrectly - correcting...");
             
-            // Restore from backups
-            Path source3t = Paths.get("ledger_KMC/ledger_currentCOPY.txt");
-            Path target3t = Paths.get("ledger_KMC/ledger_current.txt");
-            Path source4t = Paths.get("ledger_KMC/player_infoCOPY.log");
-            Path target4t = Paths.get("ledger_KMC/player_info.log");
-
-            Files.copy(source3t, target3t, StandardCopyOption.REPLACE_EXISTING);
+            // Restore from backups; re-applying the block on an un-rewound ledger would duplicate it.
+            // Both rewinds are checked before either is applied, so a refusal leaves the state whole
+            if (!LedgerCheckpoint.canRewind(1) || !PlayerStateStore.canRollback(1)) {
+                System.err.println("[FILE] Cannot restore the state before the block - leaving the block for a resync");
+                return;
+            }
+            if (!LedgerCheckpoint.rewind(1)) {
+                System.err.println("[FILE] Could not rewind ledger - leaving the block for a resync");
+                return;
+            }
             System.out.println("[FILE] Ledger backup restored successfully");
-            Files.copy(source4t, target4t, StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("[FILE] Player info backup restored successfully");
+            LedgerCurrentDigest.invalidate();
+            if (!PlayerStateStore.rollback(1)) {
+                System.err.println("[FILE] Could not roll back player info - leaving the block for a resync");
+                return;
+            }
+            System.out.println("[FILE] Player info rolled back one block");
+            BlockMerkleTree.rewindWithLedger(1);
 
             // Update ledger files
             updateLedgerFiles(block, player, hash);
@@ -235,11 +243,11 @@ System.out.println("ledger= " + ledger);
     }
 
     private static void processTransactions(String noplayer) {
-        if(noplayer.contains("&") && noplayer.contains("_") && 
-           noplayer.contains(",") && noplayer.contains("$")) {
+        TransactionLine txLine = new TransactionLine();
+        if(txLine.reset(noplayer).hasTransferDelimiters()) {
             
             System.out.println("[TX] Processing transactions...");
-            List<String> transactions = extractAllTransactions(noplayer);
+            List<String> transactions = extractAllTransactions(noplayer, txLine);
             System.out.println("[TX] Found " + transactions.size() + " transaction(s) to process");
 
             for(String sTx : transactions) {
@@ -257,24 +265,14 @@ System.out.println("ledger= " + ledger);
             String walletS = sTx.substring(0, txHamp);
             System.out.println("[TX] Wallet: " + walletS);
 
-            String dPath5 = "ledger_KMC/player_info.log";
-            
-            try (BufferedReader reader5 = new BufferedReader(new FileReader(dPath5))) {
-                String line5;
-                while ((line5 = reader5.readLine()) != null) {
-                    String playername = line5;
-                    String nextl = reader5.readLine();
-                    if(nextl == null) break;
-
-                    if(nextl.equals("@" + walletS)) {
-                        String dP2 = "Program_Files/latestTxs.log";
-                        try (BufferedWriter writer22 = new BufferedWriter(new FileWriter(dP2, true))) {
-                            writer22.write("[00:00:00] [Render thread/INFO]: [CHAT] <" + playername + "> " + sTx);
-                            writer22.newLine();
-                            System.out.println("[TX] Added transaction for player: " + playername);
-                        }
-                        break;
-                    }
+            PlayerStateStore.Player player = PlayerStateStore.byWallet(walletS);
+            if(player != null) {
+                String playername = player.name;
+                String dP2 = "Program_Files/latestTxs.log";
+                try (BufferedWriter writer22 = new BufferedWriter(new FileWriter(dP2, true))) {
+                    writer22.write("[00:00:00] [Render thread/INFO]: [CHAT] <" + playername + "> " + sTx);
+                    writer22.newLine();
+                    System.out.println("[TX] Added transaction for player: " + playername);
                 }
             }
         } catch(Exception e) {
@@ -282,7 +280,7 @@ System.out.println("ledger= " + ledger);
         }
     }
 
-    private static List<String> extractAllTransactions(String noplayer) {
+    private static List<String> extractAllTransactions(String noplayer, TransactionLine txLine) {
         List<String> transactions = new ArrayList<>();
         
         int currentIndex = 0;
@@ -293,10 +291,9 @@ System.out.println("ledger= " + ledger);
             int semiIndex = noplayer.indexOf(";", spaceIndex);
             if (semiIndex == -1) break;
             
-            String potentialTx = noplayer.substring(spaceIndex + 1, semiIndex + 1);
-            
-            if (potentialTx.contains("&") && potentialTx.contains("_") && 
-                potentialTx.contains(",") && potentialTx.contains("$")) {
+            // Only a segment holding every transfer delimiter is copied out
+            if (txLine.reset(noplayer, spaceIndex + 1, semiIndex + 1).hasTransferDelimiters()) {
+                String potentialTx = noplayer.substring(spaceIndex + 1, semiIndex + 1);
                 transactions.add(potentialTx);
                 System.out.println("[TX] Found transaction: " + potentialTx);
             }
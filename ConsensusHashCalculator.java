@@ -1,6 +1,4 @@
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -24,12 +22,24 @@ public class ConsensusHashCalculator {
      */
     public void calculateConsensusHash() {
         try {
-            String ledgerHashesContent = readFileContent(LEDGER_HASHES_FILE);
-            String playerInfoContent = readFileContent(PLAYER_INFO_FILE);
-            String ledgerCurrentContent = readFileContent(LEDGER_CURRENT_FILE);
+            HashResultCache.Probe probe = HashResultCache.probe("consensus",
+                Paths.get(LEDGER_HASHES_FILE), Paths.get(PLAYER_INFO_FILE), Paths.get(LEDGER_CURRENT_FILE));
+            String consensusHash = probe.result();
             
-            String combinedContent = ledgerHashesContent + playerInfoContent + ledgerCurrentContent;
-            String consensusHash = generateDoubleHash(combinedContent);
+            if (consensusHash == null) {
+                consensusHash = StreamingDigest.doubleHash(
+                    Paths.get(LEDGER_HASHES_FILE), Paths.get(PLAYER_INFO_FILE), Paths.get(LEDGER_CURRENT_FILE));
+            
+                if (consensusHash == null) {
+                    String ledgerHashesContent = readFileContent(LEDGER_HASHES_FILE);
+                    String playerInfoContent = readFileContent(PLAYER_INFO_FILE);
+                    String ledgerCurrentContent = readFileContent(LEDGER_CURRENT_FILE);
+                    
+                    String combinedContent = ledgerHashesContent + playerInfoContent + ledgerCurrentContent;
+                    consensusHash = generateDoubleHash(combinedContent);
+                }
+                probe.store(consensusHash);
+            }
             
             writeConsensusHash(consensusHash);
             
@@ -42,32 +52,21 @@ public class ConsensusHashCalculator {
      * Generates a SHA-256 hash of the input string
      */
     public static String generateSHA256Hash(String input) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        return bytesToHexString(hashBytes);
+        return HashChain.sha256Hex(input);
     }
     
     /**
      * Converts byte array to hexadecimal string with proper padding
      */
     public static String bytesToHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        
-        // Pad with leading zeros to ensure 64-character length
-        while (hexString.length() < 64) {
-            hexString.insert(0, '0');
-        }
-        
-        return hexString.toString();
+        return HashChain.toHex(hash);
     }
     
     /**
      * Generates a double SHA-256 hash (hash of hash)
      */
-    private String generateDoubleHash(String input) throws NoSuchAlgorithmException {
-        String firstHash = generateSHA256Hash(input);
-        return generateSHA256Hash(firstHash);
+    private String generateDoubleHash(String input) {
+        return HashChain.doubleSha256Hex(input);
     }
     
     /**
@@ -0,0 +1,155 @@
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Shared SHA-256 hash-chain engine used by every hashing site.
+ *
+ * Each thread keeps one MessageDigest plus a digest buffer and a 64-byte hex
+ * buffer, so walking a chain of n links allocates nothing per link. Hex output
+ * is lowercase and zero-padded to 64 characters, byte-identical to the old
+ * BigInteger.toString(16) encoding.
+ */
+public final class HashChain {
+
+    public static final int HASH_BYTES = 32;
+    public static final int HEX_LENGTH = 64;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private HashChain() {
+    }
+
+    /**
+     * Hashes the seed n times, feeding the hex string of each link into the next.
+     * Equivalent to n rounds of hash = toHexString(getSHA(hash)).
+     * @param seed the chain seed (hashed as UTF-8)
+     * @param n number of links to walk, 0 returns the seed unchanged
+     * @return the 64-character hex string of the last link
+     */
+    public static String iterate(String seed, int n) {
+        if (n <= 0) {
+            return seed;
+        }
+        State state = STATE.get();
+        state.digest.update(seed.getBytes(StandardCharsets.UTF_8));
+        state.finishToHex();
+        state.advance(n - 1);
+        return state.hexString();
+    }
+
+    /**
+     * Continues a chain from a link that is already a 64-character hex string.
+     * Faster than iterate() for hex seeds since no UTF-8 encoding is needed.
+     */
+    public static String iterateHex(String hexSeed, int n) {
+        if (n <= 0 || hexSeed.length() != HEX_LENGTH) {
+            return iterate(hexSeed, n);
+        }
+        State state = STATE.get();
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            char c = hexSeed.charAt(i);
+            if (c >= 0x80) {
+                return iterate(hexSeed, n);
+            }
+            state.hex[i] = (byte) c;
+        }
+        state.advance(n);
+        return state.hexString();
+    }
+
+    /**
+     * Single SHA-256 of the UTF-8 bytes of input, as hex
+     */
+    public static String sha256Hex(String input) {
+        return iterate(input, 1);
+    }
+
+    /**
+     * Single SHA-256 of raw bytes, as hex
+     */
+    public static String sha256Hex(byte[] input) {
+        State state = STATE.get();
+        state.digest.update(input);
+        state.finishToHex();
+        return state.hexString();
+    }
+
+    /**
+     * Double SHA-256 (hash of the hex string of the hash), as used by all *_HASH files
+     */
+    public static String doubleSha256Hex(String input) {
+        return iterate(input, 2);
+    }
+
+    /**
+     * Raw SHA-256 digest of the UTF-8 bytes of input
+     */
+    public static byte[] sha256(String input) {
+        return STATE.get().digest.digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lowercase, zero-padded hex encoding of a digest
+     */
+    public static String toHex(byte[] hash) {
+        byte[] out = new byte[hash.length * 2];
+        encodeHex(hash, 0, hash.length, out, 0);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes len bytes of src into ASCII hex digits in dst
+     */
+    static void encodeHex(byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) {
+            int b = src[srcOff + i] & 0xff;
+            dst[dstOff + 2 * i] = HEX_DIGITS[b >>> 4];
+            dst[dstOff + 2 * i + 1] = HEX_DIGITS[b & 0x0f];
+        }
+    }
+
+    /**
+     * Creates a fresh SHA-256 MessageDigest for callers that stream their own input
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * Per-thread digest and reusable buffers
+     */
+    private static final class State {
+        final MessageDigest digest = newDigest();
+        final byte[] hash = new byte[HASH_BYTES];
+        final byte[] hex = new byte[HEX_LENGTH];
+
+        void finishToHex() {
+            try {
+                digest.digest(hash, 0, HASH_BYTES);
+            } catch (DigestException e) {
+                throw new IllegalStateException("SHA-256 digest failed", e);
+            }
+            encodeHex(hash, 0, HASH_BYTES, hex, 0);
+        }
+
+        void advance(int links) {
+            for (int i = 0; i < links; i++) {
+                digest.update(hex, 0, HEX_LENGTH);
+                finishToHex();
+            }
+        }
+
+        String hexString() {
+            return new String(hex, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the double SHA-256 produced for a set of input files so the *_HASH
+ * producers can skip work when their inputs have not changed since the last block.
+ *
+ * Files up to FULL_CONTENT_LIMIT bytes are keyed by their whole content. Larger
+ * files are keyed by path, size, lastModified and file key plus a digest of
+ * sampled windows, and only trusted once their lastModified is safely older than
+ * the moment the hash was recorded (a rewrite within the same timestamp tick
+ * would otherwise go unnoticed).
+ */
+public class HashResultCache {
+
+    private static final Path CACHE_PATH = Paths.get("Program_Files/hash_cache.log");
+    private static final int SAMPLE_BYTES = 4096;
+    private static final long FULL_CONTENT_LIMIT = 3L * SAMPLE_BYTES;
+    private static final long RACY_WINDOW_MILLIS = 2000;
+
+    private static Map<String, Entry> entries;
+    private static long hits;
+    private static long misses;
+
+    private HashResultCache() {
+    }
+
+    /**
+     * Looks up the cached result for the given producer tag and inputs
+     */
+    public static synchronized Probe probe(String tag, Path... files) {
+        load();
+        String identity;
+        long newestModified = 0;
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (Path file : files) {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                sb.append(file).append(',').append(attrs.size()).append(',');
+                if (attrs.size() <= FULL_CONTENT_LIMIT) {
+                    sb.append("content");
+                } else {
+                    long modified = attrs.lastModifiedTime().toMillis();
+                    newestModified = Math.max(newestModified, modified);
+                    sb.append(modified).append(',').append(attrs.fileKey());
+                }
+                sb.append(',').append(sampleDigest(file, attrs.size())).append(';');
+            }
+            identity = sb.toString();
+        } catch (IOException e) {
+            misses++;
+            return new Probe(tag, null, null);
+        }
+
+        Entry entry = entries.get(tag);
+        if (entry != null && entry.identity.equals(identity)
+                && newestModified < entry.recordedAt - RACY_WINDOW_MILLIS) {
+            hits++;
+            System.out.println("Hash cache hit for " + tag + " (" + hits + " hits, " + misses + " misses)");
+            return new Probe(tag, identity, entry.hash);
+        }
+
+        misses++;
+        return new Probe(tag, identity, null);
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    private static synchronized void store(String tag, String identity, String hash) {
+        load();
+        entries.put(tag, new Entry(identity, System.currentTimeMillis(), hash));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(CACHE_PATH, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + "\t" + entry.recordedAt + "\t" + entry.hash + "\t" + entry.identity);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving hash cache: " + e.getMessage());
+        }
+    }
+
+    private static void load() {
+        if (entries != null) {
+            return;
+        }
+        entries = new HashMap<>();
+        if (!Files.exists(CACHE_PATH)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(CACHE_PATH, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    try {
+                        entries.put(parts[0], new Entry(parts[3], Long.parseLong(parts[1]), parts[2]));
+                    } catch (NumberFormatException e) {
+                        // Skip corrupt entry
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading hash cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Digest of the whole file when small, else of its first, middle and last windows
+     */
+    private static String sampleDigest(Path file, long size) throws IOException {
+        java.security.MessageDigest digest = HashChain.newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size <= FULL_CONTENT_LIMIT) {
+                digestRange(channel, 0, size, digest);
+            } else {
+                digestRange(channel, 0, SAMPLE_BYTES, digest);
+                digestRange(channel, size / 2 - SAMPLE_BYTES / 2, SAMPLE_BYTES, digest);
+                digestRange(channel, size - SAMPLE_BYTES, SAMPLE_BYTES, digest);
+            }
+        }
+        return HashChain.toHex(digest.digest());
+    }
+
+    private static void digestRange(FileChannel channel, long position, long length,
+                                    java.security.MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        digest.update(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * Result of a lookup; on a miss the caller computes the hash and hands it to store()
+     */
+    public static class Probe {
+        private final String tag;
+        private final String identity;
+        private final String cached;
+
+        Probe(String tag, String identity, String cached) {
+            this.tag = tag;
+            this.identity = identity;
+            this.cached = cached;
+        }
+
+        public boolean isHit() {
+            return cached != null;
+        }
+
+        public String result() {
+            return cached;
+        }
+
+        /**
+         * Records a freshly computed hash for the inputs seen at probe time
+         */
+        public void store(String hash) {
+            if (identity != null && hash != null) {
+                HashResultCache.store(tag, identity, hash);
+            }
+        }
+    }
+
+    private static class Entry {
+        final String identity;
+        final long recordedAt;
+        final String hash;
+
+        Entry(String identity, long recordedAt, String hash) {
+            this.identity = identity;
+            this.recordedAt = recordedAt;
+            this.hash = hash;
+        }
+    }
+}
@@ -21,7 +21,6 @@ public class KMCoin {
     private MakeLedger c13;
     private Top100Processor c14;
     private LedgerCurrentHashProcessor c15;
-    private PlayerInfoReformatter c16;
     private PlayerInfoHashGenerator c17;
     private AppendLHash c18;
     private LedgerBuilder c19;
@@ -100,19 +99,21 @@ public class KMCoin {
             setC12(new UpdateBlockBalance());
             setC13(new MakeLedger());
             setC14(new Top100Processor());
+            PlayerStateStore.flush();
             
             new PrintWriter("ledger_KMC/ledger_current_HASH.log").close();
             setC15(new LedgerCurrentHashProcessor());
-            setC16(new PlayerInfoReformatter());
             
             new PrintWriter("ledger_KMC/player_info_HASH.log").close();
             setC17(new PlayerInfoHashGenerator());
+            PlayerStateRoot.commit();
             
             File ledgerCurrent = new File("ledger_KMC/ledger_current.txt");
             long ledgerCurrentLength = ledgerCurrent.length();
             if (ledgerCurrent.exists() && ledgerCurrentLength >= 100000000) {
                 setC18(new AppendLHash());
                 setC19(new LedgerBuilder());
+                ReplayIndex.rolledOver();
                 new PrintWriter("ledger_KMC/ledger_current.txt").close();
             }
             
@@ -139,8 +140,6 @@ public class KMCoin {
         }
         
         new PrintWriter("Program_Files/latestTxs.log").close();
-        new PrintWriter("Program_Files/latestTxs2.log").close();
-        new PrintWriter("Program_Files/latestTxs3.log").close();
 
         /* Discord Consensus Check:
          * - Read discord output each loop to check for matching block consensus
@@ -164,19 +163,21 @@ public class KMCoin {
             setC12(new UpdateBlockBalance());
             setC13(new MakeLedger());
             setC14(new Top100Processor());
+            PlayerStateStore.flush();
             
             new PrintWriter("ledger_KMC/ledger_current_HASH.log").close();
             setC15(new LedgerCurrentHashProcessor());
-            setC16(new PlayerInfoReformatter());
             
             new PrintWriter("ledger_KMC/player_info_HASH.log").close();
             setC17(new PlayerInfoHashGenerator());
+            PlayerStateRoot.commit();
             
             File ledgerCurrent = new File("ledger_KMC/ledger_current.txt");
             long ledgerCurrentLength = ledgerCurrent.length();
             if (ledgerCurrent.exists() && ledgerCurrentLength >= 100000000) {
                 setC18(new AppendLHash());
                 setC19(new LedgerBuilder());
+                ReplayIndex.rolledOver();
                 new PrintWriter("ledger_KMC/ledger_current.txt").close();
             }
             
@@ -358,7 +359,6 @@ public class KMCoin {
             new PrintWriter("Program_Files/otherplayerhash.log").close();
             new PrintWriter("Program_Files/syncCopy.log").close();
             new PrintWriter("Program_Files/syncCopy2.log").close();
-            new PrintWriter("Program_Files/latestTxsA.log").close();
             new PrintWriter("Program_Files/latestcopy.log").close();
             new PrintWriter("Program_Files/latestcopyA.log").close();
             new PrintWriter("../latest.log").close();
@@ -366,6 +366,9 @@ public class KMCoin {
         }
 
         // Main execution loop
+        // Build or catch up the replay index before any transaction is admitted
+        ReplayIndex.open();
+
         System.out.println("Starting main processing loop...");
         while (true) {
             File file691ab = new File("Program_Files/startloop.log");
@@ -456,9 +459,6 @@ public class KMCoin {
     public LedgerCurrentHashProcessor getC15() { return c15; }
     public void setC15(LedgerCurrentHashProcessor c15) { this.c15 = c15; }
     
-    public PlayerInfoReformatter getC16() { return c16; }
-    public void setC16(PlayerInfoReformatter c16) { this.c16 = c16; }
-    
     public PlayerInfoHashGenerator getC17() { return c17; }
     public void setC17(PlayerInfoHashGenerator c17) { this.c17 = c17; }
     
@@ -621,14 +621,12 @@ public class KMCoinApplication extends JFrame implements ActionListener {
             "Program_Files/ledgertempnotx.log", "Program_Files/ledgertempformatted.log",
             PLAYER_BALANCE_FILE, PLAYER_TXS_FILE, "player_blocks_mined.log",
             "Program_Files/ledgertx.log", "Program_Files/latestTxs.log",
-            "Program_Files/latestTxs2.log", "publickey.log", "first_block_mined.log",
-            "Program_Files/latestTxs3.log", "Program_Files/latestTxs4.log",
-            "Program_Files/latestTxs5.log", "ledger_KMC/ledger_current_HASH.log",
-            "ledger_KMC/player_info_HASH.log", "ledger_KMC/player_info_unformatted.log",
+            "publickey.log", "first_block_mined.log", "Program_Files/latestTxs4.log",
+            "ledger_KMC/ledger_current_HASH.log",
+            "ledger_KMC/player_info_HASH.log",
             "ledger_KMC/ledgerhashes_HASH.log", "ledger_KMC/consensus_HASH.log",
             "Program_Files/txPanel.log", "ledger_KMC/wrapped.log", "discordC.txt",
             "Program_Files/readySend.txt", "discordM.txt", "Program_Files/synced.txt",
-            "ledger_KMC/ledger_currentCOPY.txt", "ledger_KMC/player_infoCOPY.log",
             "Program_Files/latestTxs4COPY.log", "Program_Files/resync.log",
             "timestamp1.txt", "Program_Files/latestTxsC.log", "Program_Files/latestTxsM.log",
             "output.txt","outputTx.txt"
@@ -648,22 +646,12 @@ public class KMCoinApplication extends JFrame implements ActionListener {
             return;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(playerInfoFile))) {
-            String currentLine;
+        PlayerStateStore.Player player = PlayerStateStore.byName(syncedPlayerName);
+        if (player != null) {
+            playerFoundCount++;
             
-            while ((currentLine = reader.readLine()) != null) {
-                if (currentLine.equals(syncedPlayerName)) {
-                    playerFoundCount++;
-                    
-                    String walletAddress = reader.readLine();
-                    String balance = reader.readLine();
-                    String transactions = reader.readLine();
-                    
-                    if (walletAddress != null && balance != null && transactions != null) {
-                        updatePlayerFiles(walletAddress, balance, transactions);
-                    }
-                    break;
-                }
+            if (player.wallet != null && player.balance != null && player.txNum != null) {
+                updatePlayerFiles(player.wallet, player.balance, player.txNum);
             }
         }
         
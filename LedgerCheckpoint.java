@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-block backup of ledger_current.txt as a length watermark.
+ *
+ * Between rollovers the ledger is only appended to, so its state before a block
+ * is just its length then. mark() records that length and the SHA-256 of the
+ * bytes before it in ledger_current_MARKS.log, keeping the last RING_SIZE blocks;
+ * rewind() truncates back to one of them once the tail digest confirms the file
+ * still starts with what was marked.
+ */
+public class LedgerCheckpoint {
+
+    private static final Path LEDGER_CURRENT_PATH = Paths.get("ledger_KMC/ledger_current.txt");
+    private static final Path MARKS_PATH = Paths.get("ledger_KMC/ledger_current_MARKS.log");
+    private static final Path MARKS_TEMP_PATH = Paths.get("ledger_KMC/ledger_current_MARKS.log.tmp");
+
+    private static final int RING_SIZE = 10;
+
+    private LedgerCheckpoint() {
+    }
+
+    /**
+     * Records the current length of the ledger before a block is applied
+     */
+    public static synchronized void mark() throws IOException {
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+            long length = channel.size();
+            List<String> marks = readMarks();
+            marks.add(length + " " + LedgerCurrentDigest.tailDigest(channel, length));
+            while (marks.size() > RING_SIZE) {
+                marks.remove(0);
+            }
+            writeMarks(marks);
+        }
+    }
+
+    /**
+     * Truncates the ledger back to its length at the blocks-th most recent mark.
+     * Returns false, leaving the file alone, if there is no such mark or the
+     * ledger no longer starts with what was marked.
+     */
+    public static synchronized boolean rewind(int blocks) throws IOException {
+        List<String> marks = readMarks();
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long length = markedLength(marks, blocks, channel);
+            if (length < 0) {
+                return false;
+            }
+            channel.truncate(length);
+            channel.force(false);
+            ReplayIndex.rewound(length);
+        }
+
+        // Keep the mark rewound to, so rewinding again without a new block changes nothing
+        writeMarks(new ArrayList<>(marks.subList(0, marks.size() - blocks + 1)));
+        return true;
+    }
+
+    /**
+     * True if rewind(blocks) would succeed now, without touching the ledger
+     */
+    public static synchronized boolean canRewind(int blocks) throws IOException {
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+            return markedLength(readMarks(), blocks, channel) >= 0;
+        }
+    }
+
+    /**
+     * Ledger length at the blocks-th most recent mark, or -1 if there is no such
+     * mark or the ledger no longer starts with what was marked
+     */
+    private static long markedLength(List<String> marks, int blocks, FileChannel channel) throws IOException {
+        if (blocks < 1 || marks.size() < blocks) {
+            System.err.println("Ledger has " + marks.size() + " marks, cannot rewind " + blocks + " blocks");
+            return -1;
+        }
+
+        String mark = marks.get(marks.size() - blocks);
+        String[] parts = mark.split(" ");
+        try {
+            long length = Long.parseLong(parts[0]);
+            if (parts.length != 2 || length > channel.size()
+                    || !parts[1].equals(LedgerCurrentDigest.tailDigest(channel, length))) {
+                System.err.println("Ledger does not match its mark, cannot rewind " + blocks + " blocks");
+                return -1;
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid ledger mark: " + mark);
+            return -1;
+        }
+    }
+
+    private static List<String> readMarks() throws IOException {
+        List<String> marks = new ArrayList<>();
+        if (Files.exists(MARKS_PATH)) {
+            for (String line : Files.readAllLines(MARKS_PATH, StandardCharsets.US_ASCII)) {
+                if (!line.isEmpty()) {
+                    marks.add(line);
+                }
+            }
+        }
+        return marks;
+    }
+
+    private static void writeMarks(List<String> marks) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String mark : marks) {
+            sb.append(mark).append('\n');
+        }
+        Files.writeString(MARKS_TEMP_PATH, sb.toString(), StandardCharsets.US_ASCII);
+        Files.move(MARKS_TEMP_PATH, MARKS_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
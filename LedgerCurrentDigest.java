@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-aware running SHA-256 of ledger_current.txt.
+ *
+ * MakeLedger, Top100Processor and AppendCHash only ever append to the ledger,
+ * so the digest midstate is checkpointed to ledger_current_DIGEST.log together
+ * with the byte offset it covers. Each block then only hashes the bytes appended
+ * since the last checkpoint instead of re-reading up to 100 MB.
+ */
+public class LedgerCurrentDigest {
+
+    private static final Path LEDGER_CURRENT_PATH = Paths.get("ledger_KMC/ledger_current.txt");
+    private static final Path CHECKPOINT_PATH = Paths.get("ledger_KMC/ledger_current_DIGEST.log");
+
+    // Bytes just before the checkpoint offset that must still match on resume
+    private static final int TAIL_BYTES = 4096;
+
+    private LedgerCurrentDigest() {
+    }
+
+    /**
+     * Returns the double SHA-256 of ledger_current.txt, identical to hashing
+     * Files.readString of it twice, or null when the file is not valid UTF-8
+     * and the caller has to take the legacy String path.
+     */
+    public static String doubleHash() throws IOException {
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+            long length = channel.size();
+
+            Sha256 sha = resume(channel, length);
+            long offset = sha == null ? 0 : sha.byteCount();
+            if (sha == null) {
+                sha = new Sha256();
+            }
+
+            if (!StreamingDigest.absorb(channel, offset, length, sha::update)) {
+                invalidate();
+                return null;
+            }
+
+            String firstHash = HashChain.toHex(sha.digest());
+            saveCheckpoint(channel, length, sha);
+            return HashChain.sha256Hex(firstHash);
+        }
+    }
+
+    /**
+     * Forgets the checkpoint, e.g. after ledger_current.txt was restored from a copy
+     */
+    public static void invalidate() {
+        try {
+            Files.deleteIfExists(CHECKPOINT_PATH);
+        } catch (IOException e) {
+            System.err.println("Error clearing ledger digest checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the checkpoint if it still describes a prefix of the current file
+     */
+    private static Sha256 resume(FileChannel channel, long length) {
+        if (!Files.exists(CHECKPOINT_PATH)) {
+            return null;
+        }
+
+        try {
+            String[] parts = Files.readString(CHECKPOINT_PATH, StandardCharsets.US_ASCII).trim().split(" ");
+            if (parts.length != 3) {
+                return null;
+            }
+
+            long offset = Long.parseLong(parts[0]);
+            Sha256 sha = Sha256.importState(parts[1]);
+            if (offset != sha.byteCount() || offset > length || !parts[2].equals(tailDigest(channel, offset))) {
+                return null;
+            }
+            return sha;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void saveCheckpoint(FileChannel channel, long length, Sha256 sha) {
+        try {
+            String checkpoint = length + " " + sha.exportState() + " " + tailDigest(channel, length);
+            Files.writeString(CHECKPOINT_PATH, checkpoint, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            System.err.println("Error saving ledger digest checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * SHA-256 of the bytes just before offset, used to detect a rewritten ledger
+     */
+    static String tailDigest(FileChannel channel, long offset) throws IOException {
+        int size = (int) Math.min(TAIL_BYTES, offset);
+        ByteBuffer tail = ByteBuffer.allocate(size);
+        long position = offset - size;
+        while (tail.hasRemaining()) {
+            int read = channel.read(tail, position + tail.position());
+            if (read <= 0) {
+                throw new IOException("Ledger shorter than checkpoint");
+            }
+        }
+        return HashChain.sha256Hex(tail.array());
+    }
+}
@@ -1,6 +1,4 @@
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -22,8 +20,17 @@ public class LedgerHashProcessor {
      */
     public void processLedgerHashes() {
         try {
-            String ledgerContent = readLedgerContent();
-            String doubleHash = generateDoubleHash(ledgerContent);
+            // ledgerhashes.log only changes at a rollover, so this is usually a cache hit
+            HashResultCache.Probe probe = HashResultCache.probe("ledgerhashes", Paths.get(LEDGER_HASHES_INPUT));
+            String doubleHash = probe.result();
+            if (doubleHash == null) {
+                doubleHash = StreamingDigest.doubleHash(Paths.get(LEDGER_HASHES_INPUT));
+                if (doubleHash == null) {
+                    String ledgerContent = readLedgerContent();
+                    doubleHash = generateDoubleHash(ledgerContent);
+                }
+                probe.store(doubleHash);
+            }
             writeLedgerHash(doubleHash);
             
         } catch (Exception e) {
@@ -35,32 +42,21 @@ public class LedgerHashProcessor {
      * Generates a SHA-256 hash of the input string
      */
     public static String generateSHA256Hash(String input) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        return bytesToHexString(hashBytes);
+        return HashChain.sha256Hex(input);
     }
     
     /**
      * Converts byte array to hexadecimal string with proper padding
      */
     public static String bytesToHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        
-        // Pad with leading zeros to ensure 64-character length
-        while (hexString.length() < 64) {
-            hexString.insert(0, '0');
-        }
-        
-        return hexString.toString();
+        return HashChain.toHex(hash);
     }
     
     /**
      * Generates a double SHA-256 hash (hash of hash)
      */
-    private String generateDoubleHash(String input) throws NoSuchAlgorithmException {
-        String firstHash = generateSHA256Hash(input);
-        return generateSHA256Hash(firstHash);
+    private String generateDoubleHash(String input) {
+        return HashChain.doubleSha256Hex(input);
     }
     
     /**
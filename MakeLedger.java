@@ -123,6 +123,9 @@ public class MakeLedger {
         } catch (IOException e) {
             throw new IOException("Failed to append entry to ledger file", e);
         }
+        
+        // Merkle commitment is kept alongside the flat ledger hash
+        BlockMerkleTree.appendBlock(ledgerEntry);
     }
     
     /**
@@ -0,0 +1,327 @@
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The transactions accepted into the current block (latestTxs4.log) as a mempool:
+ * a priority queue in block order plus an index of sender wallets.
+ *
+ * Block order is gas descending, then player name, sender wallet and txHash. The
+ * first transaction added to a block read from disk goes through reorder(), which
+ * sorts and cleans the whole block exactly as the old per-transaction rewrite of
+ * latestTxs4.log did. From then on each transaction is one O(log n) offer, with a
+ * sequence number breaking full ties the way that stable sort did (newest first),
+ * and the ordered list is drained once when the block is written. One transaction
+ * per player per block is a single lookup in the wallet index.
+ */
+public class Mempool {
+
+    private static final Charset PLATFORM = Charset.defaultCharset();
+
+    private static final Comparator<Tx> BLOCK_ORDER = new Comparator<Tx>() {
+        @Override
+        public int compare(Tx t1, Tx t2) {
+            // First compare by gas amount (descending - higher gas first)
+            int gasComparison = t2.gasAmount.compareTo(t1.gasAmount);
+            if (gasComparison != 0) {
+                return gasComparison;
+            }
+
+            // If gas amounts are equal, compare by player name (ascending - alphabetical)
+            int nameComparison = t1.playerName.compareTo(t2.playerName);
+            if (nameComparison != 0) {
+                return nameComparison;
+            }
+
+            // If player names are equal, compare by sender wallet (ascending - lowest wallet first)
+            int walletComparison = t1.senderWallet.compareTo(t2.senderWallet);
+            if (walletComparison != 0) {
+                return walletComparison;
+            }
+
+            // Final tie-breaker: compare by transaction hash (ascending)
+            return t1.txHash.compareTo(t2.txHash);
+        }
+    };
+
+    // Equal transactions keep the order the stable sort left them in
+    private static final Comparator<Tx> QUEUE_ORDER = BLOCK_ORDER.thenComparingLong(tx -> tx.seq);
+
+    // When each line was first seen in a block, for the age statistics
+    private static final Map<String, Long> firstSeen = new HashMap<>();
+
+    // Until the block is ordered: its lines as a platform-charset reader sees
+    // latestTxs4.log, and the text to write back for them
+    private List<String> lines;
+    private List<String> text;
+    private PriorityQueue<Tx> queue;
+    private final Set<String> senders = new HashSet<>();
+    private long nextSeq = -1;
+    private boolean changed;
+    private final TransactionLine txLine = new TransactionLine();
+
+    /**
+     * A mempool holding the block's transactions as read from latestTxs4.log
+     */
+    public Mempool(List<String> blockLines) {
+        lines = new ArrayList<>(blockLines);
+        text = lines;
+        for (String line : lines) {
+            addSender(line);
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (firstSeen) {
+            firstSeen.keySet().retainAll(new HashSet<>(lines));
+            for (String line : lines) {
+                firstSeen.putIfAbsent(line, now);
+            }
+        }
+    }
+
+    /**
+     * True if the block already holds a transaction from this wallet
+     */
+    public boolean hasSender(String wallet) {
+        return senders.contains(wallet);
+    }
+
+    /**
+     * Adds an accepted transaction to the block
+     */
+    public void add(String line) {
+        synchronized (firstSeen) {
+            firstSeen.putIfAbsent(line, System.currentTimeMillis());
+        }
+
+        if (queue == null || !ProcessTxs.isAscii(line)) {
+            reorder(line);
+            return;
+        }
+
+        Tx tx = parse(line);
+        if (tx == null) {
+            // Re-sorting an already ordered block without it would change nothing
+            return;
+        }
+        tx.seq = nextSeq--;
+        queue.offer(tx);
+        senders.add(tx.senderWallet);
+    }
+
+    /**
+     * True once the block differs from what was read
+     */
+    public boolean changed() {
+        return changed;
+    }
+
+    /**
+     * The block's lines in order, as they are to be written to latestTxs4.log
+     */
+    public List<String> blockText() {
+        if (queue == null) {
+            return new ArrayList<>(text);
+        }
+        List<String> ordered = new ArrayList<>(queue.size());
+        for (Tx tx : drain()) {
+            ordered.add(tx.line);
+        }
+        return ordered;
+    }
+
+    /**
+     * Number of transactions in the block
+     */
+    public int depth() {
+        return queue != null ? queue.size() : lines.size();
+    }
+
+    /**
+     * How long ago the oldest transaction in the block was first seen, in ms
+     */
+    public long oldestAgeMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        for (String line : currentLines()) {
+            oldest = Math.max(oldest, now - seenAt(line, now));
+        }
+        return oldest;
+    }
+
+    /**
+     * Mean time since the block's transactions were first seen, in ms
+     */
+    public long averageAgeMillis() {
+        List<String> current = currentLines();
+        if (current.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (String line : current) {
+            total += now - seenAt(line, now);
+        }
+        return total / current.size();
+    }
+
+    /**
+     * Sorts the new transaction together with the whole block. Lines that don't parse
+     * are dropped, and the rest are re-encoded the way they used to pass through
+     * latestTxs5.log: written in the platform charset, read back as UTF-8 with U+FFFD
+     * stripped.
+     */
+    private void reorder(String line) {
+        List<Tx> allTransactions = new ArrayList<>();
+        boolean ascii = ProcessTxs.isAscii(line);
+        Tx newTx = parse(line);
+        if (newTx != null) {
+            allTransactions.add(newTx);
+        }
+        for (String blockLine : queue != null ? linesOf(drain()) : lines) {
+            Tx tx = parse(blockLine);
+            if (tx != null) {
+                allTransactions.add(tx);
+                ascii &= ProcessTxs.isAscii(blockLine);
+            }
+        }
+
+        // Nothing to order leaves latestTxs4.log as it was
+        if (allTransactions.isEmpty()) {
+            return;
+        }
+        allTransactions.sort(BLOCK_ORDER);
+
+        lines = new ArrayList<>(allTransactions.size());
+        text = new ArrayList<>(allTransactions.size());
+        senders.clear();
+        for (Tx tx : allTransactions) {
+            String written = tx.line;
+            String view = written;
+            if (!ProcessTxs.isAscii(written)) {
+                written = new String(written.getBytes(PLATFORM), StandardCharsets.UTF_8).replace("\ufffd", "");
+                view = new String(written.getBytes(StandardCharsets.UTF_8), PLATFORM);
+            }
+            text.add(written);
+            lines.add(view);
+            addSender(view);
+        }
+        changed = true;
+
+        // Re-encoding may change a sort key, so only an ASCII block can be queued as is
+        queue = null;
+        if (ascii) {
+            queue = new PriorityQueue<>(Math.max(allTransactions.size(), 16), QUEUE_ORDER);
+            for (int i = 0; i < allTransactions.size(); i++) {
+                Tx tx = allTransactions.get(i);
+                tx.seq = i;
+                queue.offer(tx);
+            }
+            lines = null;
+            text = null;
+        }
+    }
+
+    /**
+     * The queued transactions in block order, leaving the queue as it was
+     */
+    private List<Tx> drain() {
+        PriorityQueue<Tx> copy = new PriorityQueue<>(queue);
+        List<Tx> ordered = new ArrayList<>(copy.size());
+        while (!copy.isEmpty()) {
+            ordered.add(copy.poll());
+        }
+        return ordered;
+    }
+
+    private List<String> currentLines() {
+        return queue != null ? linesOf(queue) : lines;
+    }
+
+    private static List<String> linesOf(Iterable<Tx> txs) {
+        List<String> result = new ArrayList<>();
+        for (Tx tx : txs) {
+            result.add(tx.line);
+        }
+        return result;
+    }
+
+    private static long seenAt(String line, long now) {
+        synchronized (firstSeen) {
+            Long seen = firstSeen.get(line);
+            return seen != null ? seen : now;
+        }
+    }
+
+    private void addSender(String line) {
+        String wallet = senderWallet(txLine.reset(line));
+        if (wallet != null) {
+            senders.add(wallet);
+        }
+    }
+
+    /**
+     * Creates a Tx from a transaction line, or null if it lacks a field or its gas isn't a number
+     */
+    private Tx parse(String line) {
+        TransactionLine tx = txLine.reset(line);
+        int comma = tx.comma();
+        int dollar = tx.dollar();
+        int tilde = tx.tilde();
+        String senderWallet = senderWallet(tx);
+        boolean hasName = tx.nameOpen() != -1 && tx.nameClose() != -1 && tx.nameOpen() < tx.nameClose();
+
+        if (comma != -1 && dollar != -1 && comma < dollar && hasName && senderWallet != null
+                && tilde != -1 && dollar < tilde) {
+            String gasValue = tx.text(comma + 1, dollar);
+            try {
+                BigInteger gas = new BigInteger(gasValue);
+                return new Tx(line, gas, tx.text(tx.nameOpen() + 1, tx.nameClose()), senderWallet,
+                        tx.text(dollar + 1, tilde));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid gas value: " + gasValue);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sender wallet of a transaction line (between "> " and "&"), or null
+     */
+    static String senderWallet(TransactionLine tx) {
+        int startIndex = tx.nameEnd();
+        int endIndex = tx.ampersand();
+        if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
+            return tx.text(startIndex + 2, endIndex);
+        }
+        return null;
+    }
+
+    /**
+     * One transaction in the block with its ordering keys
+     */
+    private static class Tx {
+        final String line;
+        final BigInteger gasAmount;
+        final String playerName;
+        final String senderWallet;
+        final String txHash;
+        long seq;
+
+        Tx(String line, BigInteger gasAmount, String playerName, String senderWallet, String txHash) {
+            this.line = line;
+            this.gasAmount = gasAmount;
+            this.playerName = playerName;
+            this.senderWallet = senderWallet;
+            this.txHash = txHash;
+        }
+    }
+}
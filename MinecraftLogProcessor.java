@@ -19,9 +19,6 @@ public class MinecraftLogProcessor {
     private static final int EXPECTED_PERIOD_COUNT = 6;
     private static final int TIMESTAMP_LENGTH = 10;
     
-    // Transaction marker characters
-    private static final String[] TRANSACTION_MARKERS = {"$", "~", "%", ";", ",", "_", "&"};
-    
     // Unicode cleanup pattern
     private static final String INVALID_CHAR_PATTERN = "\\ufffd";
     
@@ -30,6 +27,8 @@ public class MinecraftLogProcessor {
     private final Path latestCopyPath;
     private final Path nextBlockLinesPath;
     
+    private final TransactionLine txLine = new TransactionLine();
+    
     public MinecraftLogProcessor() throws IOException {
         this.latestCopyAPath = Paths.get(LATEST_COPY_A);
         this.latestCopyPath = Paths.get(LATEST_COPY);
@@ -184,15 +183,10 @@ public class MinecraftLogProcessor {
     }
     
     /**
-     * Check if a line contains all required transaction markers
+     * Check if a line contains all required transaction markers ($ ~ % ; , _ &)
      */
     private boolean containsAllTransactionMarkers(String line) {
-        for (String marker : TRANSACTION_MARKERS) {
-            if (!line.contains(marker)) {
-                return false;
-            }
-        }
-        return true;
+        return txLine.reset(line).hasFieldDelimiters();
     }
     
     /**
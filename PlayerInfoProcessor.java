@@ -43,6 +43,7 @@ public class PlayerInfoProcessor {
             
             // Delete the original txt file
             Files.delete(txtFile);
+            PlayerStateStore.invalidate();
             System.out.println("File conversion completed successfully!");
         }
     }
@@ -88,23 +89,11 @@ public class PlayerInfoProcessor {
             return false;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(playerInfoFile))) {
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(targetPlayer)) {
-                    // Found the player, read the next 3 lines
-                    String walletAddress = reader.readLine();
-                    String balance = reader.readLine();
-                    String transactions = reader.readLine();
-                    
-                    if (walletAddress != null && balance != null && transactions != null) {
-                        writePlayerData(walletAddress, balance, transactions);
-                        System.out.println("Player data extracted successfully for: " + targetPlayer);
-                        return true;
-                    }
-                }
-            }
+        PlayerStateStore.Player player = PlayerStateStore.byName(targetPlayer);
+        if (player != null && player.wallet != null && player.balance != null && player.txNum != null) {
+            writePlayerData(player.wallet, player.balance, player.txNum);
+            System.out.println("Player data extracted successfully for: " + targetPlayer);
+            return true;
         }
         
         return false;
@@ -0,0 +1,165 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-ahead journal for PlayerStateStore. When the store commits, every line it
+ * changed in player_info.log is appended here as "L<tab>index<tab>value" followed
+ * by a "C" commit marker, in one write and one fsync, before player_info.log
+ * itself is replaced.
+ *
+ * The first line names the player_info.log the journal applies to by size and
+ * modification time. After a crash the store replays committed batches on top of
+ * the text file; records after the last marker belong to a commit that never
+ * finished and are ignored. If the text file was replaced in the meantime (the
+ * commit completed, or a backup restore or import) the journal no longer matches
+ * and is dropped.
+ */
+public class PlayerJournal {
+
+    private static final Path JOURNAL_PATH = Paths.get("ledger_KMC/player_info.journal");
+
+    private static FileChannel channel;
+
+    private PlayerJournal() {
+    }
+
+    /**
+     * Applies journaled changes to lines read from a player_info.log of the given
+     * size and modification time. Returns true if anything was replayed.
+     */
+    static synchronized boolean replay(List<String> lines, long textSize, long textModified) {
+        if (!Files.exists(JOURNAL_PATH)) {
+            return false;
+        }
+
+        int applied = 0;
+        List<String[]> batch = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL_PATH, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(header(textSize, textModified))) {
+                return false;
+            }
+
+            // readLine() would also hand back a torn last record, so split by hand
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                sb.append(buffer, 0, n);
+            }
+            int from = 0;
+            int end;
+            while ((end = sb.indexOf("\n", from)) >= 0) {
+                String record = sb.substring(from, end);
+                from = end + 1;
+                if (record.equals("C")) {
+                    if (!apply(batch, lines)) {
+                        break;
+                    }
+                    applied += batch.size();
+                    batch.clear();
+                    continue;
+                }
+                String[] parts = record.split("\t", 3);
+                if (parts.length != 3 || !parts[0].equals("L")) {
+                    break;
+                }
+                batch.add(parts);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error replaying player journal: " + e.getMessage());
+        }
+
+        if (applied > 0) {
+            System.out.println("Replayed " + applied + " committed player_info changes from the journal");
+        }
+        return applied > 0;
+    }
+
+    /**
+     * Durably records a batch of line changes (index -> new value) with its commit marker
+     */
+    static synchronized void commit(Map<Integer, String> changes) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, String> change : changes.entrySet()) {
+            sb.append("L\t").append(change.getKey()).append('\t').append(change.getValue()).append('\n');
+        }
+        sb.append("C\n");
+
+        open();
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Applies one committed batch; indexes past the end must extend the lines in order
+     */
+    private static boolean apply(List<String[]> batch, List<String> lines) {
+        // Check the whole batch first so a bad record can't leave it half applied
+        int size = lines.size();
+        for (String[] parts : batch) {
+            int index;
+            try {
+                index = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (index > size) {
+                return false;
+            }
+            if (index == size) {
+                size++;
+            }
+        }
+
+        for (String[] parts : batch) {
+            int index = Integer.parseInt(parts[1]);
+            if (index < lines.size()) {
+                lines.set(index, parts[2]);
+            } else {
+                lines.add(parts[2]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts an empty journal on top of the player_info.log just written
+     */
+    static synchronized void reset(long textSize, long textModified) {
+        try {
+            open();
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.wrap((header(textSize, textModified) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error resetting player journal: " + e.getMessage());
+        }
+    }
+
+    private static String header(long textSize, long textModified) {
+        return "player_info.log " + textSize + " " + textModified;
+    }
+
+    private static void open() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(JOURNAL_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+}
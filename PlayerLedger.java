@@ -12,6 +12,7 @@ public class PlayerLedger {
     private static final Path LAST_PLAYER_PATH = Paths.get("Program_Files/lastplayer.log");
     private static final Path LAST_PLAYER_LEDGER_PATH = Paths.get("Program_Files/lastplayerledger.log");
     private static final Path LEDGER_FINAL_PATH = Paths.get("Program_Files/ledger_final.log");
+    private static final Path LOCAL_PLAYER_PATH = Paths.get("localplayer.txt");
     
     // Constants for processing
     private static final int SUBSTRING_INDEX = 49;
@@ -39,6 +40,8 @@ public class PlayerLedger {
         try {
             clearOutputFile();
             processPlayerFile();
+            
+            cancelSignatureUnlessLocalPlayer();
         } catch (IOException e) {
             System.err.println("Error processing player ledger: " + e.getMessage());
             throw e;
@@ -55,6 +58,19 @@ public class PlayerLedger {
         }
     }
     
+    /**
+     * Keeps the speculative block signature only if the local player mined the block
+     */
+    private void cancelSignatureUnlessLocalPlayer() {
+        try {
+            if (Files.mismatch(LOCAL_PLAYER_PATH, LAST_PLAYER_LEDGER_PATH) != -1L) {
+                BlockSignaturePrecomputer.cancel();
+            }
+        } catch (IOException e) {
+            BlockSignaturePrecomputer.cancel();
+        }
+    }
+    
     /**
      * Processes the player file by extracting player names and writing to ledger files
      * @throws IOException if file operations fail
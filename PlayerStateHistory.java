@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-block undo records for PlayerStateStore, so a block can be rolled back
+ * without keeping a full copy of player_info.log.
+ *
+ * BackupLedger marks each block with a "B" checkpoint. Every commit after it
+ * appends one batch: an "S" line with the line count and trailing newline before
+ * and after, a "U" line per changed line with its previous and new value, and a
+ * "C" marker, written and fsynced before the commit itself. Undoing the batches
+ * after a checkpoint, newest first, gives back the state as it was at that
+ * checkpoint; the cost is the number of lines the blocks touched.
+ *
+ * Checkpoints older than the last kmc.rollbackBlocks (default 10) are dropped.
+ * Each batch is checked against the current lines before it is undone: a batch
+ * whose commit never finished is skipped, and one that no longer matches (the
+ * file was replaced) stops the rollback.
+ */
+public class PlayerStateHistory {
+
+    private static final Path HISTORY_PATH = Paths.get("ledger_KMC/player_info.undo");
+    private static final Path HISTORY_TEMP_PATH = Paths.get("ledger_KMC/player_info.undo.tmp");
+    private static final int WINDOW = Math.max(1, Integer.getInteger("kmc.rollbackBlocks", 10));
+
+    private static FileChannel channel;
+    private static int checkpoints;
+    private static boolean atCheckpoint;
+
+    private PlayerStateHistory() {
+    }
+
+    /**
+     * Starts a new undo level for the block about to be applied. A checkpoint with
+     * no commits since the previous one adds nothing.
+     */
+    static synchronized void checkpoint() throws IOException {
+        open();
+        if (atCheckpoint) {
+            return;
+        }
+        write("B\n");
+        checkpoints++;
+        atCheckpoint = true;
+        if (checkpoints > 2 * WINDOW) {
+            compact();
+        }
+    }
+
+    /**
+     * Durably records how to undo one commit. changes maps each changed line that
+     * existed before the commit to its {previous, new} value.
+     */
+    static synchronized void record(int oldSize, boolean oldTerminated, int newSize, boolean newTerminated,
+                                    Map<Integer, String[]> changes) throws IOException {
+        if (changes.isEmpty() && oldSize == newSize && oldTerminated == newTerminated) {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("S\t").append(oldSize).append('\t').append(oldTerminated ? 1 : 0)
+                .append('\t').append(newSize).append('\t').append(newTerminated ? 1 : 0).append('\n');
+        for (Map.Entry<Integer, String[]> change : changes.entrySet()) {
+            // Values are whole lines, so a length prefix is enough to split them
+            String[] values = change.getValue();
+            sb.append("U\t").append(change.getKey()).append('\t').append(values[0].length()).append('\t')
+                    .append(values[0]).append(values[1]).append('\n');
+        }
+        sb.append("C\n");
+
+        open();
+        write(sb.toString());
+        atCheckpoint = false;
+    }
+
+    /**
+     * Undoes, in place, every commit since the blocks-th most recent checkpoint.
+     * Returns the length the history must be cut back to once the result is
+     * written, or -1 if the history doesn't reach that far or no longer matches
+     * the lines; lines are left partly undone in that case.
+     */
+    static synchronized long undo(int blocks, List<String> lines, boolean[] terminated) throws IOException {
+        open();
+        String content = Files.readString(HISTORY_PATH, StandardCharsets.UTF_8);
+
+        // Offsets just past each checkpoint marker
+        List<Integer> marks = new ArrayList<>();
+        int from = 0;
+        int end;
+        while ((end = content.indexOf('\n', from)) >= 0) {
+            if (end - from == 1 && content.charAt(from) == 'B') {
+                marks.add(end + 1);
+            }
+            from = end + 1;
+        }
+        if (blocks < 1 || marks.size() < blocks) {
+            System.err.println("Player state history holds " + marks.size() + " blocks, cannot roll back " + blocks);
+            return -1;
+        }
+
+        int start = marks.get(marks.size() - blocks);
+        List<Batch> batches = parse(content.substring(start));
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            Batch batch = batches.get(i);
+            if (batch.matches(lines, true)) {
+                batch.undo(lines, terminated);
+            } else if (!batch.matches(lines, false)) {
+                System.err.println("Player state history does not match player_info.log, cannot roll back");
+                return -1;
+            }
+        }
+        return content.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Drops everything after the given length, keeping the checkpoint it ends with
+     */
+    static synchronized void truncate(long length) throws IOException {
+        open();
+        channel.truncate(length);
+        channel.force(false);
+        atCheckpoint = true;
+        checkpoints = 0;
+        String content = Files.readString(HISTORY_PATH, StandardCharsets.UTF_8);
+        for (String record : content.split("\n")) {
+            if (record.equals("B")) {
+                checkpoints++;
+            }
+        }
+    }
+
+    /**
+     * Forgets all undo records, after player_info.log was replaced wholesale
+     */
+    static synchronized void clear() {
+        try {
+            open();
+            channel.truncate(0);
+            checkpoints = 0;
+            atCheckpoint = false;
+        } catch (IOException e) {
+            System.err.println("Error clearing player state history: " + e.getMessage());
+        }
+    }
+
+    private static List<Batch> parse(String content) {
+        List<Batch> batches = new ArrayList<>();
+        Batch batch = null;
+        for (String record : content.split("\n")) {
+            if (record.startsWith("S\t")) {
+                String[] parts = record.split("\t");
+                batch = new Batch(Integer.parseInt(parts[1]), parts[2].equals("1"),
+                        Integer.parseInt(parts[3]), parts[4].equals("1"));
+            } else if (record.startsWith("U\t") && batch != null) {
+                String[] parts = record.split("\t", 4);
+                int oldLength = Integer.parseInt(parts[2]);
+                batch.indexes.add(Integer.parseInt(parts[1]));
+                batch.oldValues.add(parts[3].substring(0, oldLength));
+                batch.newValues.add(parts[3].substring(oldLength));
+            } else if (record.equals("C") && batch != null) {
+                batches.add(batch);
+                batch = null;
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Rewrites the history keeping only the last WINDOW checkpoints
+     */
+    private static void compact() throws IOException {
+        String content = Files.readString(HISTORY_PATH, StandardCharsets.UTF_8);
+        int keep = 0;
+        int seen = 0;
+        int from = 0;
+        int end;
+        while ((end = content.indexOf('\n', from)) >= 0) {
+            if (end - from == 1 && content.charAt(from) == 'B' && ++seen == checkpoints - WINDOW + 1) {
+                keep = from;
+                break;
+            }
+            from = end + 1;
+        }
+
+        Files.writeString(HISTORY_TEMP_PATH, content.substring(keep), StandardCharsets.UTF_8);
+        channel.close();
+        channel = null;
+        Files.move(HISTORY_TEMP_PATH, HISTORY_PATH, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    private static void write(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private static void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(HISTORY_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        // Cut a record torn by a crash so the next append starts on a fresh line
+        String content = Files.readString(HISTORY_PATH, StandardCharsets.UTF_8);
+        int complete = content.lastIndexOf('\n') + 1;
+        if (complete < content.length()) {
+            channel.truncate(content.substring(0, complete).getBytes(StandardCharsets.UTF_8).length);
+        }
+        checkpoints = 0;
+        atCheckpoint = false;
+        for (String record : content.substring(0, complete).split("\n")) {
+            if (record.equals("B")) {
+                checkpoints++;
+                atCheckpoint = true;
+            } else if (record.equals("C")) {
+                atCheckpoint = false;
+            }
+        }
+    }
+
+    /**
+     * One commit's undo record
+     */
+    private static class Batch {
+        final int oldSize;
+        final boolean oldTerminated;
+        final int newSize;
+        final boolean newTerminated;
+        final List<Integer> indexes = new ArrayList<>();
+        final List<String> oldValues = new ArrayList<>();
+        final List<String> newValues = new ArrayList<>();
+
+        Batch(int oldSize, boolean oldTerminated, int newSize, boolean newTerminated) {
+            this.oldSize = oldSize;
+            this.oldTerminated = oldTerminated;
+            this.newSize = newSize;
+            this.newTerminated = newTerminated;
+        }
+
+        /**
+         * True if the lines are in this batch's state after (or, if not after, before) it
+         */
+        boolean matches(List<String> lines, boolean after) {
+            if (lines.size() != (after ? newSize : oldSize)) {
+                return false;
+            }
+            List<String> values = after ? newValues : oldValues;
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                if (index >= lines.size() || !lines.get(index).equals(values.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void undo(List<String> lines, boolean[] terminated) {
+            for (int i = 0; i < indexes.size(); i++) {
+                lines.set(indexes.get(i), oldValues.get(i));
+            }
+            while (lines.size() > oldSize) {
+                lines.remove(lines.size() - 1);
+            }
+            terminated[0] = oldTerminated;
+        }
+    }
+}
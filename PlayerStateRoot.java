@@ -0,0 +1,524 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Sparse Merkle state root over player_info.log, keyed by the @wallet line.
+ *
+ * Each account sits at the path SHA-256(wallet). A subtree holding a single
+ * account collapses into its leaf, so paths are about log2(players) deep and
+ * a block that touches k accounts rehashes O(k log n) nodes instead of the
+ * whole file. The changed accounts are the records PlayerStateStore committed
+ * since the last commit. When it can't say which those are (rollbacks, imports,
+ * records that moved) and on the first commit after a restart, player_info.log
+ * is read in full and compared with the accounts in the tree.
+ *
+ * state_snapshot.log holds the accounts under one root, so a restart need not
+ * rebuild the tree from nothing. It is rewritten every SNAPSHOT_INTERVAL commits.
+ *
+ * Nodes are content-addressed and appended to state_nodes.bin, and the root of
+ * each of the last RETAINED_ROOTS block heights is kept in state_roots.log, so
+ * any of those trees can still be walked and compared.
+ */
+public class PlayerStateRoot {
+
+    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
+    private static final Path LAST_BLOCK_PATH = Paths.get("Program_Files/lastblockledger.log");
+    private static final Path NODES_PATH = Paths.get("ledger_KMC/state_nodes.bin");
+    private static final Path ROOTS_PATH = Paths.get("ledger_KMC/state_roots.log");
+    private static final Path SNAPSHOT_PATH = Paths.get("ledger_KMC/state_snapshot.log");
+    private static final Path SNAPSHOT_TEMP_PATH = Paths.get("ledger_KMC/state_snapshot.log.tmp");
+    private static final Path ROOT_OUTPUT_PATH = Paths.get("ledger_KMC/player_info_ROOT.log");
+
+    private static final int RETAINED_ROOTS = 256;
+    private static final int SNAPSHOT_INTERVAL = 64;
+    private static final int HASH_BYTES = HashChain.HASH_BYTES;
+    private static final int RECORD_BYTES = 1 + 3 * HASH_BYTES;
+    private static final byte[] EMPTY = new byte[HASH_BYTES];
+
+    private static PlayerStateRoot instance;
+
+    private final MessageDigest digest = HashChain.newDigest();
+    private final Map<ByteBuffer, Node> store = new HashMap<>();
+    private final LinkedHashMap<Long, byte[]> roots = new LinkedHashMap<>();
+    private Map<String, String> accounts = new HashMap<>();
+    private Node root;
+    // Set until player_info.log has been read in full since loading
+    private boolean rescan = true;
+    private byte[] snapshotRoot;
+    private int commitsSinceSnapshot;
+    private long storedRecords;
+    // Record count at which the live set is measured again
+    private long compactAt;
+
+    private PlayerStateRoot() {
+    }
+
+    /**
+     * Brings the tree in line with player_info.log, records the root for the
+     * current block height and publishes it to player_info_ROOT.log
+     */
+    public static synchronized String commit() {
+        try {
+            if (instance == null) {
+                instance = load();
+            }
+            return instance.update();
+        } catch (IOException e) {
+            System.err.println("Error updating player state root: " + e.getMessage());
+            instance = null;
+            return null;
+        }
+    }
+
+    /**
+     * State root recorded for a recent block height, or null if it is no longer retained
+     */
+    public static synchronized String rootAt(long height) {
+        try {
+            if (instance == null) {
+                instance = load();
+            }
+            byte[] hash = instance.roots.get(height);
+            return hash == null ? null : HashChain.toHex(hash);
+        } catch (IOException e) {
+            System.err.println("Error loading player state roots: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String update() throws IOException {
+        List<String[]> records = PlayerStateStore.takeCommittedRecords();
+
+        int changed = 0;
+        if (records == null || rescan) {
+            Map<String, String> current = readAccounts(PLAYER_INFO_PATH);
+            for (Map.Entry<String, String> account : current.entrySet()) {
+                if (!account.getValue().equals(accounts.get(account.getKey()))) {
+                    root = insert(root, 0, keyHash(account.getKey()), valueHash(account.getValue()));
+                    changed++;
+                }
+            }
+            for (String wallet : accounts.keySet()) {
+                if (!current.containsKey(wallet)) {
+                    root = delete(root, 0, keyHash(wallet));
+                    changed++;
+                }
+            }
+            accounts = current;
+            rescan = false;
+        } else {
+            for (String[] record : records) {
+                String account = account(Arrays.asList(record), 0);
+                if (!account.equals(accounts.put(record[1], account))) {
+                    root = insert(root, 0, keyHash(record[1]), valueHash(account));
+                    changed++;
+                }
+            }
+        }
+
+        byte[] rootHash = hashOf(root);
+        persistNodes();
+        Long height = blockHeight();
+        if (height != null) {
+            roots.remove(height);
+            roots.put(height, rootHash);
+            while (roots.size() > RETAINED_ROOTS) {
+                roots.remove(roots.keySet().iterator().next());
+            }
+            saveRoots();
+        }
+        if (++commitsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            saveSnapshot(rootHash);
+        }
+        compactIfNeeded();
+
+        String rootHex = HashChain.toHex(rootHash);
+        Files.writeString(ROOT_OUTPUT_PATH, rootHex, StandardCharsets.UTF_8);
+        System.out.println("Player state root updated for " + changed + " changed accounts");
+        return rootHex;
+    }
+
+    // ---- tree operations ----
+
+    private Node insert(Node node, int depth, byte[] key, byte[] value) {
+        if (node == null) {
+            return leaf(key, value);
+        }
+        if (node.isLeaf()) {
+            if (Arrays.equals(node.a, key)) {
+                return leaf(key, value);
+            }
+            return split(node, leaf(key, value), depth);
+        }
+        if (bit(key, depth) == 0) {
+            return internal(insert(node.left, depth + 1, key, value), node.right);
+        }
+        return internal(node.left, insert(node.right, depth + 1, key, value));
+    }
+
+    /**
+     * Joins two leaves under the internal nodes their paths still share below depth
+     */
+    private Node split(Node existing, Node added, int depth) {
+        int existingBit = bit(existing.a, depth);
+        if (existingBit != bit(added.a, depth)) {
+            return existingBit == 0 ? internal(existing, added) : internal(added, existing);
+        }
+        Node child = split(existing, added, depth + 1);
+        return existingBit == 0 ? internal(child, null) : internal(null, child);
+    }
+
+    private Node delete(Node node, int depth, byte[] key) {
+        if (node == null) {
+            return null;
+        }
+        if (node.isLeaf()) {
+            return Arrays.equals(node.a, key) ? null : node;
+        }
+
+        Node left = node.left;
+        Node right = node.right;
+        if (bit(key, depth) == 0) {
+            left = delete(left, depth + 1, key);
+        } else {
+            right = delete(right, depth + 1, key);
+        }
+
+        // A lone leaf moves up so every tree over the same accounts has one shape
+        if (left == null && (right == null || right.isLeaf())) {
+            return right;
+        }
+        if (right == null && left.isLeaf()) {
+            return left;
+        }
+        return internal(left, right);
+    }
+
+    private static int bit(byte[] key, int depth) {
+        return (key[depth >>> 3] >>> (7 - (depth & 7))) & 1;
+    }
+
+    private Node leaf(byte[] key, byte[] value) {
+        digest.update((byte) 0x00);
+        digest.update(key);
+        digest.update(value);
+        return intern(new Node(true, digest.digest(), key, value, null, null));
+    }
+
+    private Node internal(Node left, Node right) {
+        byte[] leftHash = hashOf(left);
+        byte[] rightHash = hashOf(right);
+        digest.update((byte) 0x01);
+        digest.update(leftHash);
+        digest.update(rightHash);
+        return intern(new Node(false, digest.digest(), leftHash, rightHash, left, right));
+    }
+
+    private Node intern(Node node) {
+        Node existing = store.get(ByteBuffer.wrap(node.hash));
+        return existing != null ? existing : node;
+    }
+
+    private static byte[] hashOf(Node node) {
+        return node == null ? EMPTY : node.hash;
+    }
+
+    private byte[] keyHash(String wallet) {
+        return digest.digest(wallet.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] valueHash(String account) {
+        return digest.digest(account.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ---- persistence ----
+
+    private static PlayerStateRoot load() throws IOException {
+        PlayerStateRoot state = new PlayerStateRoot();
+        state.loadNodes();
+        state.loadRoots();
+
+        // Any snapshot whose tree is still stored will do; the first commit rescans player_info from it
+        if (Files.exists(SNAPSHOT_PATH)) {
+            try (BufferedReader reader = Files.newBufferedReader(SNAPSHOT_PATH, StandardCharsets.UTF_8)) {
+                String header = reader.readLine();
+                byte[] hash = header == null ? null : decodeHex(header);
+                Node snapshotRoot = hash == null ? null : state.store.get(ByteBuffer.wrap(hash));
+                if (snapshotRoot != null || (hash != null && Arrays.equals(hash, EMPTY))) {
+                    state.root = snapshotRoot;
+                    state.snapshotRoot = hash;
+                    state.accounts = readAccounts(reader);
+                    return state;
+                }
+            } catch (IllegalArgumentException e) {
+                // Fall through to a full rebuild
+            }
+        }
+
+        System.out.println("Rebuilding player state tree from player_info.log");
+        state.root = null;
+        state.accounts = new HashMap<>();
+        return state;
+    }
+
+    private void loadNodes() throws IOException {
+        if (!Files.exists(NODES_PATH)) {
+            return;
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(NODES_PATH))) {
+            byte[] record = new byte[RECORD_BYTES];
+            while (in.readNBytes(record, 0, RECORD_BYTES) == RECORD_BYTES) {
+                byte[] hash = Arrays.copyOfRange(record, 1, 1 + HASH_BYTES);
+                byte[] a = Arrays.copyOfRange(record, 1 + HASH_BYTES, 1 + 2 * HASH_BYTES);
+                byte[] b = Arrays.copyOfRange(record, 1 + 2 * HASH_BYTES, RECORD_BYTES);
+
+                Node node;
+                if (record[0] == 0) {
+                    node = new Node(true, hash, a, b, null, null);
+                } else {
+                    // Children are always written before their parent
+                    node = new Node(false, hash, a, b, lookup(a), lookup(b));
+                }
+                store.put(ByteBuffer.wrap(hash), node);
+                storedRecords++;
+            }
+        }
+    }
+
+    private Node lookup(byte[] hash) throws IOException {
+        if (Arrays.equals(hash, EMPTY)) {
+            return null;
+        }
+        Node node = store.get(ByteBuffer.wrap(hash));
+        if (node == null) {
+            throw new IOException("State node store is missing a child node");
+        }
+        return node;
+    }
+
+    private void loadRoots() throws IOException {
+        if (!Files.exists(ROOTS_PATH)) {
+            return;
+        }
+        for (String line : Files.readAllLines(ROOTS_PATH, StandardCharsets.US_ASCII)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2) {
+                try {
+                    roots.put(Long.parseLong(parts[0]), decodeHex(parts[1]));
+                } catch (IllegalArgumentException e) {
+                    // Skip corrupt line
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends nodes created since the last commit, children first
+     */
+    private void persistNodes() throws IOException {
+        List<Node> fresh = new ArrayList<>();
+        collectFresh(root, fresh);
+        if (fresh.isEmpty()) {
+            return;
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(NODES_PATH,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            writeNodes(fresh, out);
+        }
+        storedRecords += fresh.size();
+    }
+
+    private void collectFresh(Node node, List<Node> fresh) {
+        if (node == null || store.containsKey(ByteBuffer.wrap(node.hash))) {
+            return;
+        }
+        if (!node.isLeaf()) {
+            collectFresh(node.left, fresh);
+            collectFresh(node.right, fresh);
+        }
+        store.put(ByteBuffer.wrap(node.hash), node);
+        fresh.add(node);
+    }
+
+    private static void writeNodes(List<Node> nodes, OutputStream out) throws IOException {
+        for (Node node : nodes) {
+            out.write(node.isLeaf() ? 0 : 1);
+            out.write(node.hash);
+            out.write(node.a);
+            out.write(node.b);
+        }
+    }
+
+    /**
+     * Rewrites the node store with only the nodes reachable from retained roots
+     */
+    private void compactIfNeeded() throws IOException {
+        if (storedRecords < compactAt) {
+            return;
+        }
+
+        Set<ByteBuffer> seen = new HashSet<>();
+        List<Node> live = new ArrayList<>();
+        for (byte[] hash : roots.values()) {
+            collectLive(store.get(ByteBuffer.wrap(hash)), seen, live);
+        }
+        collectLive(root, seen, live);
+        if (snapshotRoot != null) {
+            collectLive(store.get(ByteBuffer.wrap(snapshotRoot)), seen, live);
+        }
+        compactAt = 2L * live.size() + 1024;
+        if (storedRecords < compactAt) {
+            return;
+        }
+
+        Path temp = Paths.get(NODES_PATH + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            writeNodes(live, out);
+        }
+        Files.move(temp, NODES_PATH, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        store.keySet().retainAll(seen);
+        storedRecords = live.size();
+    }
+
+    private static void collectLive(Node node, Set<ByteBuffer> seen, List<Node> live) {
+        if (node == null || !seen.add(ByteBuffer.wrap(node.hash))) {
+            return;
+        }
+        if (!node.isLeaf()) {
+            collectLive(node.left, seen, live);
+            collectLive(node.right, seen, live);
+        }
+        live.add(node);
+    }
+
+    private void saveRoots() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, byte[]> entry : roots.entrySet()) {
+            sb.append(entry.getKey()).append(' ').append(HashChain.toHex(entry.getValue())).append('\n');
+        }
+        Files.writeString(ROOTS_PATH, sb.toString(), StandardCharsets.US_ASCII);
+    }
+
+    private void saveSnapshot(byte[] rootHash) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(SNAPSHOT_TEMP_PATH, StandardCharsets.UTF_8)) {
+            writer.write(HashChain.toHex(rootHash));
+            writer.write("\n");
+            for (Map.Entry<String, String> account : accounts.entrySet()) {
+                writer.write(account.getKey());
+                writer.write("\n");
+                writer.write(account.getValue());
+                writer.write("\n");
+            }
+        }
+        Files.move(SNAPSHOT_TEMP_PATH, SNAPSHOT_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotRoot = rootHash;
+        commitsSinceSnapshot = 0;
+    }
+
+    // ---- player_info parsing ----
+
+    /**
+     * Reads 6-line player records into wallet -> "name\nbalance\ntxNum\nmined\npublicKey".
+     * Lines end at '\n' only, as PlayerStateStore splits them.
+     */
+    private static Map<String, String> readAccounts(Path path) throws IOException {
+        String[] split = Files.readString(path, StandardCharsets.UTF_8).split("\n", -1);
+        // A trailing newline ends the last line rather than starting another
+        List<String> lines = Arrays.asList(split).subList(0, split[split.length - 1].isEmpty() ? split.length - 1 : split.length);
+        Map<String, String> accounts = new LinkedHashMap<>();
+        for (int i = 0; i + 5 < lines.size(); i += 6) {
+            accounts.put(lines.get(i + 1), account(lines, i));
+        }
+        return accounts;
+    }
+
+    private static String account(List<String> record, int start) {
+        return record.get(start) + "\n" + record.get(start + 2) + "\n" + record.get(start + 3)
+                + "\n" + record.get(start + 4) + "\n" + record.get(start + 5);
+    }
+
+    /**
+     * Reads the wallet/account pairs written by saveSnapshot
+     */
+    private static Map<String, String> readAccounts(BufferedReader reader) throws IOException {
+        Map<String, String> accounts = new HashMap<>();
+        String wallet;
+        while ((wallet = reader.readLine()) != null) {
+            StringBuilder account = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Truncated player state snapshot");
+                }
+                if (i > 0) {
+                    account.append('\n');
+                }
+                account.append(line);
+            }
+            accounts.put(wallet, account.toString());
+        }
+        return accounts;
+    }
+
+    private static Long blockHeight() {
+        try {
+            String block = Files.readString(LAST_BLOCK_PATH);
+            int dotIndex = block.indexOf('.');
+            return Long.parseLong(dotIndex == -1 ? block.trim() : block.substring(0, dotIndex));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] decodeHex(String hex) {
+        if (hex.length() != HASH_BYTES * 2) {
+            throw new IllegalArgumentException("Bad hash length");
+        }
+        byte[] out = new byte[HASH_BYTES];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Bad hash");
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+
+    /**
+     * Leaf: a = key hash, b = value hash. Internal: a/b = child hashes.
+     */
+    private static class Node {
+        final boolean leaf;
+        final byte[] hash;
+        final byte[] a;
+        final byte[] b;
+        final Node left;
+        final Node right;
+
+        Node(boolean leaf, byte[] hash, byte[] a, byte[] b, Node left, Node right) {
+            this.leaf = leaf;
+            this.hash = hash;
+            this.a = a;
+            this.b = b;
+            this.left = left;
+            this.right = right;
+        }
+
+        boolean isLeaf() {
+            return leaf;
+        }
+    }
+}
@@ -0,0 +1,619 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-memory copy of player_info.log with hash indexes by player name and by
+ * wallet, so block processing no longer rescans the file for every transaction.
+ *
+ * The file holds six-line records: name, @wallet, balance, txNum, mined blocks and
+ * public key. Changes are made in memory and written back in one go by flush(),
+ * once per ProcessTxs run and once per block, in exactly the same text format.
+ * Code that replaces the file wholesale (backup restores, imports) calls
+ * invalidate(); a change of size or modification time is also picked up on the
+ * next lookup.
+ *
+ * Debits, credits and rewards are accumulated per account with credit()/debit()
+ * and netted, so an account touched many times in a block gets one new balance.
+ * flush() is the block's commit: the netted changes go to PlayerJournal with a
+ * commit marker in one write and one fsync, then player_info.log is replaced by
+ * an atomic rename. A crash mid-block leaves the previous state; a crash mid-commit
+ * is finished from the journal. When the binary PlayerTable is switched on it is
+ * updated in place at commit, and the store loads from it instead of parsing the
+ * text.
+ *
+ * Each commit also leaves an undo record in PlayerStateHistory with the previous
+ * values of the lines it changed. BackupLedger marks every block with
+ * checkpoint(), and rollback() takes the state back a number of blocks.
+ *
+ * The records each commit changed are also kept until PlayerStateRoot takes
+ * them with takeCommittedRecords(), so the state root follows the block without
+ * rereading the file.
+ */
+public class PlayerStateStore {
+
+    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
+    private static final Path PLAYER_INFO_TEMP_PATH = Paths.get("ledger_KMC/player_info.log.tmp");
+    private static final int RECORD_LINES = 6;
+
+    private static final int NAME = 0;
+    private static final int WALLET = 1;
+    private static final int BALANCE = 2;
+    private static final int TX_NUM = 3;
+
+    private static List<String> lines;
+    private static boolean terminated;
+    private static final Map<String, Integer> byName = new HashMap<>();
+    private static final Map<String, Integer> byWallet = new HashMap<>();
+    private static boolean dirty;
+    private static long loadedSize = -1;
+    private static long loadedModified = -1;
+
+    // Uncommitted changes: line index -> new value, and record start -> net balance change
+    private static final TreeMap<Integer, String> pending = new TreeMap<>();
+    private static final Map<Integer, Delta> balanceDeltas = new HashMap<>();
+    private static int committedLines;
+    private static boolean committedTerminated;
+    private static boolean reshaped;
+
+    // Committed value of each line changed since the last commit, for the undo record
+    private static final Map<Integer, String> previous = new HashMap<>();
+
+    // Starts of records committed since takeCommittedRecords(); not known after a load, rollback or reshape
+    private static final Set<Integer> committedRecords = new TreeSet<>();
+    private static boolean recordsKnown;
+    private static boolean sharedWallets;
+
+    private PlayerStateStore() {
+    }
+
+    /**
+     * Looks up a player by name, or returns null if they have not mined a block yet
+     */
+    public static synchronized Player byName(String name) throws IOException {
+        load();
+        return player(byName.get(name));
+    }
+
+    /**
+     * Looks up a player by wallet address, with or without the leading '@'
+     */
+    public static synchronized Player byWallet(String wallet) throws IOException {
+        load();
+        return player(byWallet.get(wallet.startsWith("@") ? wallet.substring(1) : wallet));
+    }
+
+    public static synchronized void setBalance(String name, String balance) throws IOException {
+        load();
+        Integer start = byName.get(name);
+        if (start != null) {
+            balanceDeltas.remove(start);
+        }
+        set(name, BALANCE, balance);
+    }
+
+    /**
+     * Adds amount to a player's balance at the next commit
+     */
+    public static synchronized void credit(String name, Uint128 amount) throws IOException {
+        Delta delta = delta(name);
+        if (delta != null) {
+            delta.credit(amount);
+        }
+    }
+
+    /**
+     * Takes amount from a player's balance at the next commit
+     */
+    public static synchronized void debit(String name, Uint128 amount) throws IOException {
+        Delta delta = delta(name);
+        if (delta != null) {
+            delta.debit(amount);
+        }
+    }
+
+    /**
+     * credit() for amounts that don't fit a Uint128 (signed or oversized text)
+     */
+    public static synchronized void credit(String name, BigInteger amount) throws IOException {
+        Delta delta = delta(name);
+        if (delta != null) {
+            delta.widen(amount);
+        }
+    }
+
+    /**
+     * debit() for amounts that don't fit a Uint128
+     */
+    public static synchronized void debit(String name, BigInteger amount) throws IOException {
+        Delta delta = delta(name);
+        if (delta != null) {
+            delta.widen(amount.negate());
+        }
+    }
+
+    public static synchronized void setTxNum(String name, String txNum) throws IOException {
+        set(name, TX_NUM, txNum);
+    }
+
+    /**
+     * Appends a new player record
+     */
+    public static synchronized void addPlayer(String name, String wallet, String balance,
+                                              String txNum, String mined, String publicKey) throws IOException {
+        load();
+        String[] record = {name, wallet, balance, txNum, mined, publicKey};
+        int start = 0;
+        if (!terminated && !lines.isEmpty()) {
+            // Appending to a file without a trailing newline glues onto its last line
+            int last = lines.size() - 1;
+            change(last, lines.get(last) + record[0]);
+            reshaped = true;
+            start = 1;
+        }
+        for (int i = start; i < record.length; i++) {
+            change(lines.size(), record[i]);
+        }
+        terminated = true;
+        reindex();
+        dirty = true;
+    }
+
+    /**
+     * Commits pending changes to player_info.log
+     */
+    public static synchronized void flush() {
+        if (lines == null || !dirty) {
+            return;
+        }
+
+        // Net change per account; parsing and formatting once gives the same text as one update per transaction
+        for (Map.Entry<Integer, Delta> delta : balanceDeltas.entrySet()) {
+            int index = delta.getKey() + BALANCE;
+            if (index < lines.size()) {
+                change(index, delta.getValue().applyTo(lines.get(index)));
+            }
+        }
+        balanceDeltas.clear();
+
+        try {
+            Map<Integer, String[]> undo = new TreeMap<>();
+            for (Map.Entry<Integer, String> change : pending.headMap(committedLines).entrySet()) {
+                undo.put(change.getKey(), new String[] {previous.get(change.getKey()), change.getValue()});
+            }
+            PlayerStateHistory.record(committedLines, committedTerminated, lines.size(), terminated, undo);
+            PlayerJournal.commit(pending);
+            write();
+        } catch (IOException e) {
+            System.err.println("Error writing player info: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the start of a block; rollback(n) returns to the state at the n-th
+     * most recent mark. Changes not yet committed belong to the new block.
+     */
+    public static synchronized void checkpoint() throws IOException {
+        PlayerStateHistory.checkpoint();
+    }
+
+    /**
+     * Takes player_info.log back to its state at the blocks-th most recent
+     * checkpoint, dropping uncommitted changes as restoring a file copy did.
+     * Returns false, leaving the state as it was, if the history can't do that.
+     */
+    public static synchronized boolean rollback(int blocks) throws IOException {
+        lines = null;
+        load();
+
+        List<String> restored = new ArrayList<>(lines);
+        boolean[] restoredTerminated = {terminated};
+        long keep = PlayerStateHistory.undo(blocks, restored, restoredTerminated);
+        if (keep < 0) {
+            return false;
+        }
+
+        for (int i = 0; i < restored.size(); i++) {
+            if (i >= lines.size() || !restored.get(i).equals(lines.get(i))) {
+                pending.put(i, restored.get(i));
+            }
+        }
+        reshaped = restored.size() < lines.size() || restoredTerminated[0] != terminated;
+        lines = restored;
+        terminated = restoredTerminated[0];
+        reindex();
+        recordsKnown = false;
+
+        // The undo records are still there if this doesn't finish, and are cut afterwards
+        write();
+        if (dirty) {
+            lines = null;
+            dirty = false;
+            return false;
+        }
+        PlayerStateHistory.truncate(keep);
+        return true;
+    }
+
+    /**
+     * True if rollback(blocks) would find the undo records it needs, checked
+     * against the committed lines rollback() reads back. Changes nothing.
+     */
+    public static synchronized boolean canRollback(int blocks) throws IOException {
+        load();
+        List<String> committed = new ArrayList<>(lines.subList(0, Math.min(committedLines, lines.size())));
+        for (Map.Entry<Integer, String> line : previous.entrySet()) {
+            committed.set(line.getKey(), line.getValue());
+        }
+        return PlayerStateHistory.undo(blocks, committed, new boolean[] {committedTerminated}) >= 0;
+    }
+
+    /**
+     * Records committed since the last call, as {name, wallet, balance, txNum,
+     * mined, publicKey} in file order. Returns null when only rereading the file
+     * can tell what changed: after a load, rollback or invalidate(), when records
+     * moved or two records share a wallet, or with changes still uncommitted.
+     * Either way the next call covers commits from here on.
+     */
+    public static synchronized List<String[]> takeCommittedRecords() {
+        List<String[]> records = null;
+        if (recordsKnown && !sharedWallets && lines != null && !dirty && !changedOnDisk()) {
+            records = new ArrayList<>();
+            for (int start : committedRecords) {
+                if (start + RECORD_LINES <= lines.size()) {
+                    records.add(lines.subList(start, start + RECORD_LINES).toArray(new String[0]));
+                }
+            }
+        }
+        committedRecords.clear();
+        recordsKnown = true;
+        return records;
+    }
+
+    /**
+     * Loads player_info.log if it isn't loaded yet
+     */
+    static synchronized void ensureLoaded() throws IOException {
+        load();
+    }
+
+    /**
+     * Drops the in-memory copy, including unflushed changes, after the file was replaced
+     */
+    public static synchronized void invalidate() {
+        lines = null;
+        dirty = false;
+        pending.clear();
+        previous.clear();
+        balanceDeltas.clear();
+        reshaped = false;
+        recordsKnown = false;
+        PlayerStateHistory.clear();
+        RichList.reset();
+    }
+
+    /**
+     * Writes the lines to the binary table and player_info.log and makes them the
+     * committed state
+     */
+    private static void write() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            sb.append(lines.get(i));
+            if (i < lines.size() - 1 || terminated) {
+                sb.append('\n');
+            }
+        }
+
+        try {
+            boolean table = PlayerTable.enabled();
+            if (table) {
+                updateTable();
+            }
+
+            Files.writeString(PLAYER_INFO_TEMP_PATH, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(PLAYER_INFO_TEMP_PATH, PLAYER_INFO_PATH,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            updateRichList();
+            if (reshaped) {
+                recordsKnown = false;
+            }
+            for (int index : pending.keySet()) {
+                committedRecords.add(index - index % RECORD_LINES);
+            }
+            dirty = false;
+            pending.clear();
+            previous.clear();
+            reshaped = false;
+            committedLines = lines.size();
+            committedTerminated = terminated;
+            remember();
+            PlayerJournal.reset(loadedSize, loadedModified);
+            if (table) {
+                PlayerTable.synced(loadedSize, loadedModified);
+            }
+            RichList.save(loadedSize, loadedModified);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Error writing player info: " + e.getMessage());
+        }
+    }
+
+    private static void set(String name, int field, String value) throws IOException {
+        load();
+        Integer start = byName.get(name);
+        if (start != null && start + field < lines.size()) {
+            change(start + field, value);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Sets or appends one line, remembering the committed value it replaces
+     */
+    private static void change(int index, String value) {
+        if (index < committedLines) {
+            previous.putIfAbsent(index, lines.get(index));
+        }
+        if (index < lines.size()) {
+            lines.set(index, value);
+        } else {
+            lines.add(value);
+        }
+        pending.put(index, value);
+    }
+
+    /**
+     * The pending balance change of a player, or null if they have no balance line
+     */
+    private static Delta delta(String name) throws IOException {
+        load();
+        Integer start = byName.get(name);
+        if (start == null || start + BALANCE >= lines.size()) {
+            return null;
+        }
+        dirty = true;
+        return balanceDeltas.computeIfAbsent(start, s -> new Delta());
+    }
+
+    /**
+     * Writes the committed changes into the binary table: in place for existing
+     * records, appended slots for new players
+     */
+    private static void updateTable() {
+        if (reshaped || committedLines % RECORD_LINES != 0) {
+            // Records shifted; the table matches no text file until synced()
+            PlayerTable.rebuild(lines, terminated, -1, -1);
+            return;
+        }
+        for (Map.Entry<Integer, String> change : pending.headMap(committedLines).entrySet()) {
+            PlayerTable.update(change.getKey() / RECORD_LINES, change.getKey() % RECORD_LINES, change.getValue());
+        }
+        for (int start = committedLines; start < lines.size(); start += RECORD_LINES) {
+            PlayerTable.append(lines.subList(start, Math.min(start + RECORD_LINES, lines.size())).toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Re-ranks the records whose name, wallet or balance this commit changed
+     */
+    private static void updateRichList() {
+        if (reshaped) {
+            RichList.rebuild(lines);
+            return;
+        }
+        int last = -1;
+        for (int index : pending.keySet()) {
+            int start = index - index % RECORD_LINES;
+            if (start != last && (index % RECORD_LINES <= BALANCE || start >= committedLines)) {
+                RichList.update(start, lines);
+                last = start;
+            }
+        }
+    }
+
+    private static Player player(Integer start) {
+        if (start == null) {
+            return null;
+        }
+        String[] fields = new String[RECORD_LINES];
+        for (int i = 0; i < RECORD_LINES && start + i < lines.size(); i++) {
+            fields[i] = lines.get(start + i);
+        }
+        Delta delta = balanceDeltas.get(start);
+        if (delta != null) {
+            fields[BALANCE] = delta.applyTo(fields[BALANCE]);
+        }
+        return new Player(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+    }
+
+    private static void load() throws IOException {
+        if (lines != null && !changedOnDisk()) {
+            return;
+        }
+        if (lines != null && dirty) {
+            System.err.println("player_info.log changed on disk, discarding unsaved player updates");
+        }
+        pending.clear();
+        previous.clear();
+        balanceDeltas.clear();
+        reshaped = false;
+        recordsKnown = false;
+
+        remember();
+        boolean table = PlayerTable.enabled();
+        PlayerTable.Snapshot snapshot = table ? PlayerTable.load(loadedSize, loadedModified) : null;
+        if (snapshot != null) {
+            // A commit that reached the table but not the text file is finished here
+            lines = snapshot.lines;
+            terminated = snapshot.terminated;
+            dirty = snapshot.ahead;
+        } else {
+            lines = new ArrayList<>();
+            terminated = true;
+            dirty = false;
+            if (Files.exists(PLAYER_INFO_PATH)) {
+                String content = Files.readString(PLAYER_INFO_PATH, StandardCharsets.UTF_8);
+                if (!content.isEmpty()) {
+                    String[] split = content.split("\n", -1);
+                    terminated = split[split.length - 1].isEmpty();
+                    int count = terminated ? split.length - 1 : split.length;
+                    for (int i = 0; i < count; i++) {
+                        lines.add(split[i]);
+                    }
+                }
+            }
+        }
+
+        // Commits journaled but not yet in the text file; replaying ones the table already has is harmless
+        int textLines = lines.size();
+        boolean replayed = PlayerJournal.replay(lines, loadedSize, loadedModified);
+        if (replayed) {
+            dirty = true;
+            if (lines.size() > textLines) {
+                terminated = true;
+            }
+        } else {
+            PlayerJournal.reset(loadedSize, loadedModified);
+        }
+        reindex();
+        RichList.rebuild(lines);
+        committedLines = lines.size();
+        committedTerminated = terminated;
+
+        if (table && (snapshot == null || replayed)) {
+            PlayerTable.rebuild(lines, terminated, replayed ? -1 : loadedSize, replayed ? -1 : loadedModified);
+        }
+    }
+
+    private static void reindex() {
+        byName.clear();
+        byWallet.clear();
+        Set<String> wallets = new HashSet<>();
+        sharedWallets = false;
+        for (int start = 0; start < lines.size(); start += RECORD_LINES) {
+            // First record wins, as it did for the line-by-line scans
+            byName.putIfAbsent(lines.get(start + NAME), start);
+            if (start + WALLET < lines.size()) {
+                String wallet = lines.get(start + WALLET);
+                sharedWallets |= !wallets.add(wallet);
+                if (wallet.startsWith("@")) {
+                    byWallet.putIfAbsent(wallet.substring(1), start);
+                }
+            }
+        }
+    }
+
+    private static boolean changedOnDisk() {
+        try {
+            if (!Files.exists(PLAYER_INFO_PATH)) {
+                return loadedSize != -1;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(PLAYER_INFO_PATH, BasicFileAttributes.class);
+            return attrs.size() != loadedSize || attrs.lastModifiedTime().toMillis() != loadedModified;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void remember() {
+        try {
+            if (Files.exists(PLAYER_INFO_PATH)) {
+                BasicFileAttributes attrs = Files.readAttributes(PLAYER_INFO_PATH, BasicFileAttributes.class);
+                loadedSize = attrs.size();
+                loadedModified = attrs.lastModifiedTime().toMillis();
+            } else {
+                loadedSize = -1;
+                loadedModified = -1;
+            }
+        } catch (IOException e) {
+            loadedSize = -1;
+            loadedModified = -1;
+        }
+    }
+
+    /**
+     * Net uncommitted balance change of one account. Credits and debits are kept as
+     * separate unsigned sums; anything Uint128 can't hold is carried in wide.
+     */
+    private static class Delta {
+        private Uint128 credits = Uint128.ZERO;
+        private Uint128 debits = Uint128.ZERO;
+        private BigInteger wide;
+
+        void credit(Uint128 amount) {
+            try {
+                credits = credits.add(amount);
+            } catch (ArithmeticException e) {
+                widen(amount.toBigInteger());
+            }
+        }
+
+        void debit(Uint128 amount) {
+            try {
+                debits = debits.add(amount);
+            } catch (ArithmeticException e) {
+                widen(amount.toBigInteger().negate());
+            }
+        }
+
+        void widen(BigInteger amount) {
+            wide = wide == null ? amount : wide.add(amount);
+        }
+
+        /**
+         * The balance text after this change, formatted as BigInteger would
+         */
+        String applyTo(String balance) {
+            if (wide == null) {
+                try {
+                    Uint128 credited = Uint128.parse(balance).add(credits);
+                    if (credited.compareTo(debits) >= 0) {
+                        return credited.subtract(debits).toString();
+                    }
+                } catch (NumberFormatException | ArithmeticException e) {
+                    // Negative, signed or oversized balance: take the BigInteger path
+                }
+            }
+            BigInteger net = credits.toBigInteger().subtract(debits.toBigInteger());
+            if (wide != null) {
+                net = net.add(wide);
+            }
+            return new BigInteger(balance).add(net).toString();
+        }
+    }
+
+    /**
+     * One player_info.log record as stored; trailing fields of a truncated record are null
+     */
+    public static class Player {
+        public final String name;
+        public final String wallet;
+        public final String balance;
+        public final String txNum;
+        public final String mined;
+        public final String publicKey;
+
+        Player(String name, String wallet, String balance, String txNum, String mined, String publicKey) {
+            this.name = name;
+            this.wallet = wallet;
+            this.balance = balance;
+            this.txNum = txNum;
+            this.mined = mined;
+            this.publicKey = publicKey;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional binary mirror of player_info.log with one fixed-width slot per player,
+ * memory-mapped so a balance or txNum change is an in-place write of a few bytes.
+ *
+ * It is switched on by creating ledger_KMC/player_table.bin (an empty file will
+ * do); PlayerStateStore then fills it from the text file and keeps it up to date.
+ * Each 128-byte slot holds the balance as an unsigned 128-bit number, txNum, mined
+ * blocks, the public key as 32 raw bytes, and references to the name and wallet
+ * lines in the append-only player_table.heap. Records that don't fit that shape
+ * (leading zeros, non-hex keys, a truncated last record) keep their lines as text
+ * in the heap instead, so converting back to player_info.log is always lossless.
+ *
+ * The header remembers the size and modification time of the player_info.log the
+ * table was last in step with. If the text file no longer matches it was replaced
+ * behind the table's back and the table is rebuilt from it; if it does match but
+ * the table has changes since, those are recovered from the table.
+ */
+public class PlayerTable {
+
+    private static final Path TABLE_PATH = Paths.get("ledger_KMC/player_table.bin");
+    private static final Path HEAP_PATH = Paths.get("ledger_KMC/player_table.heap");
+
+    private static final long MAGIC = 0x4b4d435054424c31L; // "KMCPTBL1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 128;
+    private static final int RECORD_LINES = 6;
+    private static final int MIN_CAPACITY = 1024;
+
+    // Header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_SLOTS = 8;
+    private static final int H_TEXT_SIZE = 16;
+    private static final int H_TEXT_MODIFIED = 24;
+    private static final int H_HEAP_LENGTH = 32;
+    private static final int H_TERMINATED = 40;
+    private static final int H_AHEAD = 41;
+
+    // Slot fields
+    private static final int S_FLAGS = 0;
+    private static final int S_LINES = 1;
+    private static final int S_NAME_LEN = 4;
+    private static final int S_NAME_REF = 8;
+    private static final int S_WALLET_REF = 16;
+    private static final int S_WALLET_LEN = 24;
+    private static final int S_BALANCE = 32;
+    private static final int S_TX_NUM = 48;
+    private static final int S_MINED = 56;
+    private static final int S_PUBLIC_KEY = 64;
+    private static final int S_TEXT_REF = 96;
+    private static final int S_TEXT_LEN = 104;
+
+    private static final int FLAG_TEXT = 1;
+
+    // Record lines that can change in place
+    private static final int BALANCE = 2;
+    private static final int TX_NUM = 3;
+    private static final int MINED = 4;
+
+    private static final BigInteger MAX_BALANCE = BigInteger.ONE.shiftLeft(128);
+
+    private static FileChannel channel;
+    private static FileChannel heap;
+    private static MappedByteBuffer map;
+    private static int capacity;
+
+    private PlayerTable() {
+    }
+
+    /**
+     * True when the binary table has been switched on
+     */
+    public static boolean enabled() {
+        return Files.exists(TABLE_PATH);
+    }
+
+    /**
+     * Lines of player_info.log as mirrored by the table, or null if the table is
+     * not in step with a text file of this size and modification time
+     */
+    static synchronized Snapshot load(long textSize, long textModified) {
+        try {
+            open();
+            if (map.getLong(H_MAGIC) != MAGIC
+                    || map.getLong(H_TEXT_SIZE) != textSize
+                    || map.getLong(H_TEXT_MODIFIED) != textModified) {
+                return null;
+            }
+
+            long slots = map.getLong(H_SLOTS);
+            List<String> lines = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                String[] record = readSlot(slot);
+                for (String line : record) {
+                    lines.add(line);
+                }
+            }
+            return new Snapshot(lines, map.get(H_TERMINATED) == 1, map.get(H_AHEAD) == 1);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading player table, rebuilding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the table contents with the given player_info.log lines
+     */
+    static synchronized void rebuild(List<String> lines, boolean terminated, long textSize, long textModified) {
+        try {
+            open();
+            heap.truncate(0);
+            map.putLong(H_HEAP_LENGTH, 0);
+            map.putLong(H_SLOTS, 0);
+
+            int slots = (lines.size() + RECORD_LINES - 1) / RECORD_LINES;
+            ensureCapacity(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                int from = slot * RECORD_LINES;
+                writeSlot(slot, lines.subList(from, Math.min(from + RECORD_LINES, lines.size())).toArray(new String[0]));
+            }
+            map.putLong(H_SLOTS, slots);
+            map.put(H_TERMINATED, (byte) (terminated ? 1 : 0));
+            map.putLong(H_MAGIC, MAGIC);
+            synced(textSize, textModified);
+        } catch (IOException e) {
+            System.err.println("Error building player table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes one field of one record in place
+     */
+    static synchronized void update(int slot, int field, String value) {
+        try {
+            open();
+            int base = HEADER_BYTES + slot * SLOT_BYTES;
+            map.put(H_AHEAD, (byte) 1);
+            if ((map.get(base + S_FLAGS) & FLAG_TEXT) == 0) {
+                if (field == BALANCE && isAmount(value, MAX_BALANCE)) {
+                    putBalance(base, value);
+                    return;
+                }
+                if ((field == TX_NUM || field == MINED) && isAmount(value, BigInteger.valueOf(Long.MAX_VALUE))) {
+                    map.putLong(base + (field == TX_NUM ? S_TX_NUM : S_MINED), Long.parseLong(value));
+                    return;
+                }
+            }
+
+            String[] record = readSlot(slot);
+            if (field < record.length) {
+                record[field] = value;
+                writeSlot(slot, record);
+            }
+        } catch (IOException e) {
+            System.err.println("Error updating player table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a complete record after the last one
+     */
+    static synchronized void append(String[] record) {
+        try {
+            open();
+            int slot = (int) map.getLong(H_SLOTS);
+            ensureCapacity(slot + 1);
+            map.put(H_AHEAD, (byte) 1);
+            writeSlot(slot, record);
+            map.putLong(H_SLOTS, slot + 1);
+        } catch (IOException e) {
+            System.err.println("Error appending to player table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records that player_info.log now holds exactly what the table holds
+     */
+    static synchronized void synced(long textSize, long textModified) {
+        try {
+            open();
+            map.putLong(H_TEXT_SIZE, textSize);
+            map.putLong(H_TEXT_MODIFIED, textModified);
+            map.put(H_AHEAD, (byte) 0);
+            map.force();
+        } catch (IOException e) {
+            System.err.println("Error syncing player table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the table out in the legacy player_info.log text format
+     */
+    public static synchronized void exportText(Path target) throws IOException {
+        open();
+        long slots = map.getLong(H_SLOTS);
+        StringBuilder sb = new StringBuilder();
+        for (int slot = 0; slot < slots; slot++) {
+            for (String line : readSlot(slot)) {
+                sb.append(line).append('\n');
+            }
+        }
+        if (map.get(H_TERMINATED) == 0 && sb.length() > 0) {
+            sb.setLength(sb.length() - 1);
+        }
+        Files.writeString(target, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static String[] readSlot(int slot) throws IOException {
+        int base = HEADER_BYTES + slot * SLOT_BYTES;
+        int lines = map.get(base + S_LINES);
+
+        if ((map.get(base + S_FLAGS) & FLAG_TEXT) != 0) {
+            String text = readHeap(map.getLong(base + S_TEXT_REF), map.getInt(base + S_TEXT_LEN));
+            return text.split("\n", -1);
+        }
+
+        byte[] balance = new byte[16];
+        map.get(base + S_BALANCE, balance);
+        byte[] publicKey = new byte[HashChain.HASH_BYTES];
+        map.get(base + S_PUBLIC_KEY, publicKey);
+
+        String[] record = new String[lines];
+        record[0] = readHeap(map.getLong(base + S_NAME_REF), map.getInt(base + S_NAME_LEN));
+        record[1] = readHeap(map.getLong(base + S_WALLET_REF), map.getInt(base + S_WALLET_LEN));
+        record[2] = new BigInteger(1, balance).toString();
+        record[3] = Long.toString(map.getLong(base + S_TX_NUM));
+        record[4] = Long.toString(map.getLong(base + S_MINED));
+        record[5] = HashChain.toHex(publicKey);
+        return record;
+    }
+
+    private static void writeSlot(int slot, String[] record) throws IOException {
+        int base = HEADER_BYTES + slot * SLOT_BYTES;
+        boolean binary = record.length == RECORD_LINES
+                && isAmount(record[2], MAX_BALANCE)
+                && isAmount(record[3], BigInteger.valueOf(Long.MAX_VALUE))
+                && isAmount(record[4], BigInteger.valueOf(Long.MAX_VALUE))
+                && isHexKey(record[5]);
+
+        if (!binary) {
+            String text = String.join("\n", record);
+            map.putLong(base + S_TEXT_REF, appendHeap(text));
+            map.putInt(base + S_TEXT_LEN, utf8Length(text));
+            map.put(base + S_LINES, (byte) record.length);
+            map.put(base + S_FLAGS, (byte) FLAG_TEXT);
+            return;
+        }
+
+        map.putLong(base + S_NAME_REF, appendHeap(record[0]));
+        map.putInt(base + S_NAME_LEN, utf8Length(record[0]));
+        map.putLong(base + S_WALLET_REF, appendHeap(record[1]));
+        map.putInt(base + S_WALLET_LEN, utf8Length(record[1]));
+        putBalance(base, record[2]);
+        map.putLong(base + S_TX_NUM, Long.parseLong(record[3]));
+        map.putLong(base + S_MINED, Long.parseLong(record[4]));
+        map.put(base + S_PUBLIC_KEY, decodeHex(record[5]));
+        map.put(base + S_LINES, (byte) RECORD_LINES);
+        map.put(base + S_FLAGS, (byte) 0);
+    }
+
+    private static void putBalance(int base, String value) {
+        byte[] balance = new BigInteger(value).toByteArray();
+        byte[] slotBalance = new byte[16];
+        int copy = Math.min(balance.length, 16);
+        System.arraycopy(balance, balance.length - copy, slotBalance, 16 - copy, copy);
+        map.put(base + S_BALANCE, slotBalance);
+    }
+
+    /**
+     * Canonical decimal (no sign, no leading zeros) below the limit
+     */
+    private static boolean isAmount(String value, BigInteger limit) {
+        if (value.isEmpty() || value.length() > 40 || (value.length() > 1 && value.charAt(0) == '0')) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return new BigInteger(value).compareTo(limit) < 0;
+    }
+
+    private static boolean isHexKey(String value) {
+        if (value.length() != HashChain.HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void open() throws IOException {
+        if (map != null) {
+            return;
+        }
+        channel = FileChannel.open(TABLE_PATH, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        heap = FileChannel.open(HEAP_PATH, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        int slots = size >= HEADER_BYTES ? (int) ((size - HEADER_BYTES) / SLOT_BYTES) : 0;
+        capacity = Math.max(MIN_CAPACITY, slots);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+    }
+
+    private static void ensureCapacity(int slots) throws IOException {
+        if (slots <= capacity) {
+            return;
+        }
+        map.force();
+        while (capacity < slots) {
+            capacity *= 2;
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+    }
+
+    private static long appendHeap(String value) throws IOException {
+        long at = map.getLong(H_HEAP_LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+        long position = at;
+        while (buffer.hasRemaining()) {
+            position += heap.write(buffer, position);
+        }
+        map.putLong(H_HEAP_LENGTH, position);
+        return at;
+    }
+
+    private static String readHeap(long ref, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (heap.read(buffer, ref + buffer.position()) <= 0) {
+                throw new IOException("Player table heap truncated");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static byte[] decodeHex(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4) | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return out;
+    }
+
+    /**
+     * player_info.log lines read back from the table
+     */
+    static class Snapshot {
+        final List<String> lines;
+        final boolean terminated;
+        final boolean ahead;
+
+        Snapshot(List<String> lines, boolean terminated, boolean ahead) {
+            this.lines = lines;
+            this.terminated = terminated;
+            this.ahead = ahead;
+        }
+    }
+}
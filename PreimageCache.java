@@ -0,0 +1,108 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the last accepted txHash (preimage) of each sender wallet together
+ * with the txNum it was accepted at and the public key it was checked against.
+ *
+ * TxPanelB reveals one link deeper in the same chain on every transaction, so
+ * the next txHash of a player hashes once to the previous one. That lets
+ * ProcessTxs verify with a single SHA-256 instead of walking up to 1001 links.
+ */
+public class PreimageCache {
+
+    private static final Path CACHE_PATH = Paths.get("Program_Files/preimage_cache.log");
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty = false;
+
+    /**
+     * Loads the cache from disk, starting empty if it is missing or unreadable
+     */
+    public static PreimageCache load() {
+        PreimageCache cache = new PreimageCache();
+        if (!Files.exists(CACHE_PATH)) {
+            return cache;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(CACHE_PATH, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 4) {
+                    continue;
+                }
+                try {
+                    cache.entries.put(parts[0], new Entry(Integer.parseInt(parts[1]), parts[2], parts[3]));
+                } catch (NumberFormatException e) {
+                    // Skip corrupt entry, it will be re-learned on the next full walk
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading preimage cache: " + e.getMessage());
+        }
+        return cache;
+    }
+
+    /**
+     * Checks a txHash against the cached preimage of the sender's previous transaction.
+     * Only answers for the direct successor of the cached txNum under the same public key,
+     * and only when the validator's chain length for txNum is one more than for txNum - 1.
+     * @return true if the txHash hashes to the cached preimage; false means "walk the full chain"
+     */
+    public boolean verifiesNext(String wallet, int txNum, String publicKey, String txHash) {
+        Entry entry = entries.get(wallet);
+        if (entry == null || entry.txNum != txNum - 1 || !entry.publicKey.equals(publicKey)) {
+            return false;
+        }
+        if (ProcessTxs.chainLength(txNum) != ProcessTxs.chainLength(txNum - 1) + 1) {
+            return false; // 1000-transaction key rollover
+        }
+        return HashChain.sha256Hex(txHash).equals(entry.preimage);
+    }
+
+    /**
+     * Records an accepted txHash as the newest revealed preimage for the wallet
+     */
+    public void record(String wallet, int txNum, String publicKey, String txHash) {
+        entries.put(wallet, new Entry(txNum, publicKey, txHash));
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache back to disk if anything changed
+     */
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(CACHE_PATH, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + " " + entry.txNum + " " + entry.publicKey + " " + entry.preimage);
+                writer.newLine();
+            }
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error saving preimage cache: " + e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        final int txNum;
+        final String publicKey;
+        final String preimage;
+
+        Entry(int txNum, String publicKey, String preimage) {
+            this.txNum = txNum;
+            this.publicKey = publicKey;
+            this.preimage = preimage;
+        }
+    }
+}
@@ -1,6 +1,4 @@
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -41,8 +39,7 @@ public class PrintHash {
      * @throws IOException if encoding fails
      */
     public static String doubleHashSHA256(String input) throws NoSuchAlgorithmException, IOException {
-        String firstHash = toHexString(getSHA256(input));
-        return toHexString(getSHA256(firstHash));
+        return HashChain.doubleSha256Hex(input);
     }
     
     /**
@@ -52,8 +49,7 @@ public class PrintHash {
      * @throws NoSuchAlgorithmException if SHA-256 algorithm is not available
      */
     public static byte[] getSHA256(String input) throws NoSuchAlgorithmException {
-        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-        return messageDigest.digest(input.getBytes(StandardCharsets.UTF_8));
+        return HashChain.sha256(input);
     }
     
     /**
@@ -62,15 +58,7 @@ public class PrintHash {
      * @return hexadecimal string representation of the hash (64 characters)
      */
     public static String toHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        
-        // Pad with leading zeros to ensure 64-character length for SHA-256
-        while (hexString.length() < 64) {
-            hexString.insert(0, '0');
-        }
-        
-        return hexString.toString();
+        return HashChain.toHex(hash);
     }
     
     /**
@@ -3,543 +3,389 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.lang.String;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Scanner;
-import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class ProcessTxs {
 
     // Constants
     private static final BigInteger ZERO = new BigInteger("0");
     private static final BigInteger WRAP_NUM = new BigInteger("50000000000000000");
-    private static final BigInteger WRAP_ADDRESS = new BigInteger("21000001");
-    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
-    
+    private static final String WRAP_ADDRESS = "21000001";
+    private static final Path PENDING_TXS_PATH = Paths.get("Program_Files/latestTxs.log");
+    private static final Path BLOCK_TXS_PATH = Paths.get("Program_Files/latestTxs4.log");
+    private static final Charset PLATFORM = Charset.defaultCharset();
+
+    // Shared by every run, so verifying a batch starts no threads of its own
+    private static final ForkJoinPool PROOF_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     // Instance variables
     private String spName;
+    private final PreimageCache preimageCache = PreimageCache.load();
+    private final Map<String, Boolean> proofVerdicts = new ConcurrentHashMap<>();
+
+    private Mempool mempool;
+    private final TransactionLine txLine = new TransactionLine();
 
     public ProcessTxs() throws FileNotFoundException, IOException {
-        copyOneAndAllTx();
+        List<String> pending = new ArrayList<>();
+        for (String line : readLines(PENDING_TXS_PATH)) {
+            pending.add(staged(line));
+        }
+        verifyPendingProofs(pending);
         clearFile("Program_Files/latestTxs.log");
 
-        processTransactions();
+        processTransactions(pending);
 
-        // Continue processing remaining transactions
-        File remainingTxFile = new File("Program_Files/latestTxsB.log");
-        while (remainingTxFile.length() != 0) {
-            clearFiles(new String[]{"Program_Files/latestTxs2.log", "Program_Files/latestTxs3.log", "Program_Files/latestTxs5.log"});
-            
-            copyTxAgain();
-            copyOneAndAllTx();
-            processTransactions();
-        }
+        preimageCache.save();
+        PlayerStateStore.flush();
     }
 
-    private void processTransactions() {
+    /**
+     * Verification stage: parses the whole pending batch from latestTxs.log and checks
+     * every hash chain concurrently before the serial loop starts. The serial path
+     * then only looks up the verdict, so balance checks and state updates still run
+     * one at a time in the same order as before.
+     */
+    private void verifyPendingProofs(List<String> pending) {
         try {
-            removeFakeTx();
-            checkForTx();
-
-            processFileIfExists("Program_Files/latestTxs2.log", this::ensureInts);
-            processFileIfExists("Program_Files/latestTxs3.log", this::orderTxByGas);
-            processFileIfExists("Program_Files/latestTxs5.log", this::cL5);
-            
-        } catch (Exception e) {
-            System.err.println("Error processing transactions: " + e.getMessage());
-        }
-    }
+            List<String[]> jobs = new ArrayList<>();
+            int reused = 0;
+            for (String line : pending) {
+                TransactionData txData = parseTransactionLine(line);
+                if (txData == null || line.length() > 303) {
+                    continue;
+                }
 
-    private void processFileIfExists(String filename, FileProcessor processor) {
-        try {
-            File file = new File(filename);
-            if (file.exists() && file.length() != 0) {
-                processor.process();
+                PlayerStateStore.Player player = PlayerStateStore.byWallet(txData.senderWallet);
+                if (player == null || player.publicKey == null) {
+                    continue;
+                }
+                String txNumLine = player.txNum;
+                String publicKeyLine = player.publicKey;
+                String bodyKey = VerdictCache.bodyKey(line);
+
+                // Transactions re-queued by a resync were usually verified against this same state already
+                try {
+                    int txNum = Integer.parseInt(txNumLine);
+                    VerdictCache.Verdict cached = VerdictCache.lookup(bodyKey, txNum, publicKeyLine);
+                    if (cached != null) {
+                        proofVerdicts.put(verdictKey(txData.txHash, txNum, publicKeyLine), cached.accepted);
+                        reused++;
+                        continue;
+                    }
+                } catch (NumberFormatException e) {
+                    // Left for the serial path to reject
+                }
+                jobs.add(new String[]{txData.senderWallet, txData.txHash, txNumLine, publicKeyLine, bodyKey});
             }
-        } catch (Exception e) {
-            System.err.println("Error processing file " + filename + ": " + e.getMessage());
-        }
-    }
-
-    @FunctionalInterface
-    private interface FileProcessor {
-        void process() throws Exception;
-    }
-
-    private void clearFile(String filename) throws FileNotFoundException {
-        new PrintWriter(filename).close();
-    }
 
-    private void clearFiles(String[] filenames) {
-        for (String filename : filenames) {
-            try {
-                clearFile(filename);
-            } catch (FileNotFoundException e) {
-                System.err.println("Could not clear file: " + filename);
+            if (reused > 0) {
+                System.out.println("Reused " + reused + " cached transaction proof verdicts");
             }
-        }
-    }
-
-    public void copyOneAndAllTx() throws FileNotFoundException, IOException {
-        File sourceFile = new File("Program_Files/latestTxs.log");
-        File singleTxFile = new File("Program_Files/latestTxsA.log");
-        File multipleTxFile = new File("Program_Files/latestTxsB.log");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(sourceFile));
-             BufferedWriter singleWriter = new BufferedWriter(new FileWriter(singleTxFile));
-             BufferedWriter multipleWriter = new BufferedWriter(new FileWriter(multipleTxFile))) {
-            
-            String firstLine = reader.readLine();
-            if (firstLine != null) {
-                System.out.println("Processing first transaction");
-                singleWriter.write(firstLine);
+            if (jobs.isEmpty()) {
+                return;
             }
 
-            String line;
-            int additionalCount = 0;
-            while ((line = reader.readLine()) != null) {
-                multipleWriter.write(line + System.lineSeparator());
-                additionalCount++;
-            }
-            
-            if (additionalCount > 0) {
-                System.out.println("Queued " + additionalCount + " additional transactions");
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), jobs.size());
+            long start = System.nanoTime();
+            boolean lanes = Sha256Lanes.preferred();
+            if (lanes) {
+                verifyProofsInLanes(jobs, threads, PROOF_POOL);
+            } else {
+                PROOF_POOL.submit(() -> jobs.parallelStream().forEach(job -> {
+                    try {
+                        int txNum = Integer.parseInt(job[2]);
+                        proofVerdicts.put(verdictKey(job[1], txNum, job[3]), verifyProof(job[0], job[1], txNum, job[3]));
+                    } catch (NumberFormatException e) {
+                        // Left for the serial path to reject
+                    }
+                })).get();
+            }
+            System.out.println("Verified " + jobs.size() + " transaction proofs on " + threads + " threads"
+                    + (lanes ? " with " + Sha256Lanes.LANES + "-lane SHA-256" : "") + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            for (String[] job : jobs) {
+                try {
+                    int txNum = Integer.parseInt(job[2]);
+                    Boolean valid = proofVerdicts.get(verdictKey(job[1], txNum, job[3]));
+                    if (valid != null) {
+                        VerdictCache.record(job[4], txNum, job[3], valid);
+                    }
+                } catch (NumberFormatException e) {
+                    // Nothing was verified for it
+                }
             }
-        }
-    }
-
-    public void copyTxAgain() throws IOException {
-        copyFile("Program_Files/latestTxsB.log", "Program_Files/latestTxs.log");
-    }
-
-    public void copyManyTx() throws IOException {
-        copyFile("Program_Files/latestTxs.log", "Program_Files/latestTxsA.log");
-    }
-
-    private void copyFile(String sourcePath, String destinationPath) throws IOException {
-        Path source = Paths.get(sourcePath);
-        Path destination = Paths.get(destinationPath);
-        Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
-    }
 
-    public void copyOneTx() throws IOException {
-        File inputFile = new File("Program_Files/latestTxsA.log");
-        File outputFile = new File("Program_Files/latestTxs.log");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true))) {
-            
-            String firstLine = reader.readLine();
-            if (firstLine != null) {
-                writer.write(firstLine + System.lineSeparator());
-            }
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error verifying pending transactions: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public void removeFakeTx() throws IOException {
-        File inputFile = new File("Program_Files/latestTxsA.log");
-        File outputFile = new File("Program_Files/latestTxs2.log");
-        
-        System.out.println("Validating transactions...");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true))) {
-            
-            String currentLine;
-            int validCount = 0, rejectedCount = 0;
-            
-            while ((currentLine = reader.readLine()) != null) {
-                String trimmedLine = currentLine.trim();
-                int greaterThanCount = trimmedLine.length() - trimmedLine.replace(">", "").length();
-
-                // Check both conditions: <= 1 ">" characters AND <= 303 total characters
-                if (greaterThanCount <= 1 && currentLine.length() <= 303) {
-                    writer.write(currentLine + System.lineSeparator());
-                    validCount++;
-                    
-                    String endOfName = ">";
-                    int nameIndex = currentLine.indexOf(endOfName);
-                    if (nameIndex > 41) {
-                        spName = currentLine.substring(41, nameIndex);
-                    }
+    /**
+     * Batch variant for JVMs without SHA-256 intrinsics: proofs that miss the
+     * preimage cache are walked several chains at a time by Sha256Lanes, one
+     * slice of the batch per thread.
+     */
+    private void verifyProofsInLanes(List<String[]> jobs, int threads, ForkJoinPool pool)
+            throws InterruptedException, ExecutionException {
+        List<String[]> chains = new ArrayList<>();
+        for (String[] job : jobs) {
+            try {
+                int txNum = Integer.parseInt(job[2]);
+                if (preimageCache.verifiesNext(job[0], txNum, job[3], job[1])) {
+                    proofVerdicts.put(verdictKey(job[1], txNum, job[3]), true);
+                } else if (Sha256Lanes.accepts(job[1])) {
+                    chains.add(job);
                 } else {
-                    rejectedCount++;
-                    if (greaterThanCount > 1) {
-                        System.out.println("Rejected: too many '>' chars (" + greaterThanCount + ")");
-                    } else if (currentLine.length() > 303) {
-                        System.out.println("Rejected: length " + currentLine.length() + " > 303");
-                    }
+                    proofVerdicts.put(verdictKey(job[1], txNum, job[3]),
+                            job[3].equals(HashChain.iterate(job[1], chainLength(txNum))));
                 }
+            } catch (NumberFormatException e) {
+                // Left for the serial path to reject
             }
-            
-            System.out.println("Validation complete: " + validCount + " valid, " + rejectedCount + " rejected");
         }
-    }
 
-    public void checkForTx() throws FileNotFoundException, IOException {
-        String endOfName = "> ";
-        String delimiter = "&";
-        
-        // Read all wallet addresses from latestTxs4.log
-        Set<String> walletsFromTxs4 = new HashSet<>();
-        File txs4File = new File("Program_Files/latestTxs4.log");
-        
-        if (txs4File.exists()) {
-            try (BufferedReader readerTxs4 = new BufferedReader(new FileReader(txs4File))) {
-                String line;
-                while ((line = readerTxs4.readLine()) != null) {
-                    String wallet = extractWalletAddress(line, endOfName, delimiter);
-                    if (wallet != null) {
-                        walletsFromTxs4.add(wallet);
-                    }
+        int slice = (chains.size() + threads - 1) / Math.max(threads, 1);
+        List<Future<?>> slices = new ArrayList<>();
+        for (int from = 0; from < chains.size(); from += slice) {
+            List<String[]> part = chains.subList(from, Math.min(chains.size(), from + slice));
+            slices.add(pool.submit(() -> {
+                String[] seeds = new String[part.size()];
+                int[] counts = new int[part.size()];
+                for (int i = 0; i < part.size(); i++) {
+                    seeds[i] = part.get(i)[1];
+                    counts[i] = chainLength(Integer.parseInt(part.get(i)[2]));
                 }
-            }
-        }
-        
-        // Read wallet addresses from latestTxsA.log and compare
-        File txsFile = new File("Program_Files/latestTxsA.log");
-        boolean matchFound = false;
-        
-        if (txsFile.exists()) {
-            try (BufferedReader readerTxs = new BufferedReader(new FileReader(txsFile))) {
-                String line;
-                while ((line = readerTxs.readLine()) != null) {
-                    String wallet = extractWalletAddress(line, endOfName, delimiter);
-                    if (wallet != null) {
-                        if (walletsFromTxs4.contains(wallet)) {
-                            System.out.println("Duplicate wallet detected: " + wallet + " - One tx per player per block enforced");
-                            clearLogFiles();
-                            matchFound = true;
-                            break;
-                        }
-                    }
+                String[] ends = new Sha256Lanes().iterate(seeds, counts);
+                for (int i = 0; i < part.size(); i++) {
+                    String[] job = part.get(i);
+                    proofVerdicts.put(verdictKey(job[1], Integer.parseInt(job[2]), job[3]), job[3].equals(ends[i]));
                 }
-            }
+            }));
         }
-        
-        if (!matchFound && walletsFromTxs4.size() > 0) {
-            System.out.println("No wallet conflicts found - proceeding");
+        for (Future<?> result : slices) {
+            result.get();
         }
     }
 
-    private String extractWalletAddress(String line, String startDelimiter, String endDelimiter) {
+    /**
+     * Runs the pending batch through filter, duplicate check, validation, ordering
+     * and application in one pass. latestTxs4.log is read once up front and written
+     * once at the end; in between each transaction goes through the same checks, in
+     * the same file order, that the old latestTxsA/B/2/3/5 chain applied to it one
+     * file rewrite at a time, so the block's transactions come out byte for byte the same.
+     */
+    private void processTransactions(List<String> pending) {
         try {
-            int startIndex = line.indexOf(startDelimiter);
-            int endIndex = line.indexOf(endDelimiter);
-            
-            if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
-                return line.substring(startIndex + startDelimiter.length(), endIndex);
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+            mempool = new Mempool(readLines(BLOCK_TXS_PATH));
+        } catch (IOException e) {
+            System.err.println("Error reading block transactions: " + e.getMessage());
+            return;
         }
-        return null;
-    }
-
-    private void clearLogFiles() {
-        String[] filesToClear = {
-            "Program_Files/latestTxs.log",
-            "Program_Files/latestTxs2.log", 
-            "Program_Files/latestTxs3.log",
-            "Program_Files/latestTxs5.log"
-        };
-        
-        clearFiles(filesToClear);
-    }
 
-    /**
-     * Orders transactions by gas amount (descending) then by player name (ascending),
-     * then by sender wallet (ascending), then by transaction hash (ascending)
-     * to ensure deterministic ordering across all endpoints
-     */
-    public void orderTxByGas() throws IOException {
-        File inputFile = new File("Program_Files/latestTxs3.log");
-        File compareFile = new File("Program_Files/latestTxs4.log");
-        File outputFile = new File("Program_Files/latestTxs5.log");
-        
-        // Read all transactions from both files
-        List<TransactionEntry> allTransactions = new ArrayList<>();
-        
-        // Read from input file
-        try (BufferedReader inputReader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = inputReader.readLine()) != null) {
-                TransactionEntry entry = createTransactionEntry(line);
-                if (entry != null) {
-                    allTransactions.add(entry);
-                }
+        System.out.println("Processing " + pending.size() + " pending transactions");
+        int validCount = 0, rejectedCount = 0, acceptedCount = 0;
+        for (String line : pending) {
+            // An empty line never made it past the old single-transaction file
+            if (line.isEmpty()) {
+                continue;
             }
-        }
-        
-        // Read from compare file
-        if (compareFile.exists()) {
-            try (BufferedReader compareReader = new BufferedReader(new FileReader(compareFile))) {
-                String line;
-                while ((line = compareReader.readLine()) != null) {
-                    TransactionEntry entry = createTransactionEntry(line);
-                    if (entry != null) {
-                        allTransactions.add(entry);
-                    }
-                }
+            if (!removeFakeTx(line)) {
+                rejectedCount++;
+                continue;
             }
-        }
-        
-        // Sort by gas (descending) then by player name (ascending) then by wallet (ascending) then by tx hash (ascending)
-        Collections.sort(allTransactions, new Comparator<TransactionEntry>() {
-            @Override
-            public int compare(TransactionEntry t1, TransactionEntry t2) {
-                // First compare by gas amount (descending - higher gas first)
-                int gasComparison = t2.gasAmount.compareTo(t1.gasAmount);
-                if (gasComparison != 0) {
-                    return gasComparison;
-                }
-                
-                // If gas amounts are equal, compare by player name (ascending - alphabetical)
-                int nameComparison = t1.playerName.compareTo(t2.playerName);
-                if (nameComparison != 0) {
-                    return nameComparison;
-                }
-                
-                // If player names are equal, compare by sender wallet (ascending - lowest wallet first)
-                int walletComparison = t1.senderWallet.compareTo(t2.senderWallet);
-                if (walletComparison != 0) {
-                    return walletComparison;
-                }
-                
-                // Final tie-breaker: compare by transaction hash (ascending)
-                return t1.txHash.compareTo(t2.txHash);
+            validCount++;
+
+            String wallet = Mempool.senderWallet(txLine.reset(line));
+            if (wallet != null && mempool.hasSender(wallet)) {
+                System.out.println("Duplicate wallet detected: " + wallet + " - One tx per player per block enforced");
+                continue;
             }
-        });
-        
-        // Write sorted transactions to output file
-        try (BufferedWriter outputWriter = new BufferedWriter(new FileWriter(outputFile))) {
-            for (TransactionEntry entry : allTransactions) {
-                outputWriter.write(entry.originalLine + System.lineSeparator());
+
+            try {
+                if (processTransactionLine(line)) {
+                    mempool.add(line);
+                    acceptedCount++;
+                }
+            } catch (Exception e) {
+                System.err.println("Error processing transaction: " + e.getMessage());
             }
         }
-        
-        if (allTransactions.size() > 0) {
-            System.out.println("Sorted " + allTransactions.size() + " transactions by gas/priority");
-        }
-    }
-    
-    /**
-     * Creates a TransactionEntry from a transaction line
-     */
-    private TransactionEntry createTransactionEntry(String line) {
-        String gasValue = extractGasValue(line);
-        String playerName = extractPlayerName(line);
-        String senderWallet = extractSenderWallet(line);
-        String txHash = extractTxHash(line);
-        
-        if (gasValue != null && playerName != null && senderWallet != null && txHash != null) {
+        System.out.println("Validation complete: " + validCount + " valid, " + rejectedCount + " rejected, "
+                + acceptedCount + " accepted");
+        System.out.println("Mempool: " + mempool.depth() + " transactions in block, oldest "
+                + mempool.oldestAgeMillis() + " ms, average " + mempool.averageAgeMillis() + " ms");
+
+        if (mempool.changed()) {
             try {
-                BigInteger gas = new BigInteger(gasValue);
-                return new TransactionEntry(line, gas, playerName, senderWallet, txHash);
-            } catch (NumberFormatException e) {
-                System.err.println("Invalid gas value: " + gasValue);
+                writeBlockTxs();
+            } catch (IOException e) {
+                System.err.println("Error writing block transactions: " + e.getMessage());
             }
         }
-        return null;
     }
-    
-    /**
-     * Extracts player name from between < and > characters
-     */
-    private String extractPlayerName(String line) {
-        try {
-            int startIndex = line.indexOf("<");
-            int endIndex = line.indexOf(">");
-            
-            if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
-                return line.substring(startIndex + 1, endIndex);
-            }
-        } catch (Exception e) {
-            System.err.println("Error extracting player name from line: " + line);
+
+    private void writeBlockTxs() throws IOException {
+        List<String> block = mempool.blockText();
+        StringBuilder sb = new StringBuilder();
+        for (String line : block) {
+            sb.append(line).append(System.lineSeparator());
         }
-        return null;
+        Files.writeString(BLOCK_TXS_PATH, sb.toString(), StandardCharsets.UTF_8);
+        System.out.println("Sorted " + block.size() + " transactions by gas/priority");
     }
 
-    /**
-     * Extracts sender wallet from transaction line (between "> " and "&")
-     */
-    private String extractSenderWallet(String line) {
-        try {
-            int startIndex = line.indexOf("> ");
-            int endIndex = line.indexOf("&");
-            
-            if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
-                return line.substring(startIndex + 2, endIndex);
-            }
-        } catch (Exception e) {
-            System.err.println("Error extracting sender wallet from line: " + line);
-        }
-        return null;
+    private void clearFile(String filename) throws FileNotFoundException {
+        new PrintWriter(filename).close();
     }
 
     /**
-     * Extracts transaction hash from transaction line (between "$" and "~")
+     * Reads a file line by line with the platform charset, as the old stages did
      */
-    private String extractTxHash(String line) {
-        try {
-            int startIndex = line.indexOf("$");
-            int endIndex = line.indexOf("~");
-            
-            if (startIndex != -1 && endIndex != -1 && startIndex < endIndex) {
-                return line.substring(startIndex + 1, endIndex);
+    private static List<String> readLines(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
             }
-        } catch (Exception e) {
-            System.err.println("Error extracting transaction hash from line: " + line);
         }
-        return null;
+        return lines;
     }
 
-    private String extractGasValue(String line) {
-        try {
-            int commaIndex = line.indexOf(",");
-            int dollarIndex = line.indexOf("$");
-            if (commaIndex != -1 && dollarIndex != -1 && commaIndex < dollarIndex) {
-                return line.substring(commaIndex + 1, dollarIndex);
-            }
-        } catch (Exception e) {
-            System.err.println("Error extracting gas value from line: " + line);
-        }
-        return null;
+    /**
+     * A line as the old stages saw it, after a FileWriter/FileReader round trip
+     * through a staging file in the platform charset
+     */
+    private static String staged(String line) {
+        return isAscii(line) ? line : new String(line.getBytes(PLATFORM), PLATFORM);
     }
 
-    public void cL5() throws IOException {
-        try (Reader reader = new InputStreamReader(new FileInputStream("Program_Files/latestTxs5.log"), "UTF-8");
-             BufferedReader bufferedReader = new BufferedReader(reader);
-             Writer writer = new OutputStreamWriter(new FileOutputStream("Program_Files/latestTxs4.log"), "UTF-8");
-             BufferedWriter bufferedWriter = new BufferedWriter(writer)) {
-            
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                bufferedWriter.write(line.replaceAll("\\ufffd", ""));
-                bufferedWriter.newLine();
+    static boolean isAscii(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) {
+                return false;
             }
         }
-        clearFile("Program_Files/latestTxs5.log");
+        return true;
     }
 
-    public void copyManyTxB() throws IOException {
-        copyFile("Program_Files/latestTxsB.log", "Program_Files/latestTxsA.log");
-    }
+    /**
+     * Rejects lines with more than one '>' or longer than 303 characters, and
+     * remembers the sender's name from a well-formed line
+     */
+    public boolean removeFakeTx(String currentLine) {
+        String trimmedLine = currentLine.trim();
+        int greaterThanCount = trimmedLine.length() - trimmedLine.replace(">", "").length();
 
-    public void removeFirstTx() throws IOException {
-        File inputFile = new File("Program_Files/latestTxsA.log");
-        File outputFile = new File("Program_Files/latestTxsB.log");
-        
-        try (Scanner fileScanner = new Scanner(inputFile);
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            
-            if (fileScanner.hasNextLine()) {
-                fileScanner.nextLine(); // Skip first line
-            }
-            
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine();
-                writer.write(line);
-                writer.newLine();
+        // Check both conditions: <= 1 ">" characters AND <= 303 total characters
+        if (greaterThanCount <= 1 && currentLine.length() <= 303) {
+            String endOfName = ">";
+            int nameIndex = currentLine.indexOf(endOfName);
+            if (nameIndex > 41) {
+                spName = currentLine.substring(41, nameIndex);
             }
+            return true;
         }
-    }
-
-    public void copyOneTxAgain() throws IOException {
-        copyOneTx(); // This method does the same thing
-    }
 
-    public void ensureInts() throws FileNotFoundException, IOException {
-        File inputFile = new File("Program_Files/latestTxs2.log");
-        File outputFile = new File("Program_Files/latestTxs3.log");
-        
-        System.out.println("Processing transaction data...");
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true))) {
-            
-            String currentLine;
-            while ((currentLine = reader.readLine()) != null) {
-                processTransactionLine(currentLine, writer);
-            }
+        if (greaterThanCount > 1) {
+            System.out.println("Rejected: too many '>' chars (" + greaterThanCount + ")");
+        } else {
+            System.out.println("Rejected: length " + currentLine.length() + " > 303");
         }
+        return false;
     }
 
-    private void processTransactionLine(String currentLine, BufferedWriter writer) throws IOException {
-        // Extract transaction components
-        TransactionData txData = parseTransactionLine(currentLine);
-
-        if (txData == null) {
+    /**
+     * Validates one transaction and applies it; true if it was accepted
+     */
+    private boolean processTransactionLine(String currentLine) throws IOException {
+        // Locate the transaction fields
+        if (!isWellFormed(txLine.reset(currentLine))) {
             System.out.println("Invalid transaction format - skipping");
-            return;
+            return false;
         }
 
         // Validate transaction data
-        if (!isValidTransactionData(txData)) {
-            return;
+        if (!isValidTransactionData(txLine)) {
+            return false;
         }
 
         // Process the transaction with player info
-        processWithPlayerInfo(txData, currentLine, writer);
+        return processWithPlayerInfo(transactionData(txLine));
     }
 
     private TransactionData parseTransactionLine(String line) {
-        try {
-            int endIndex = line.indexOf("> ");
-            int hampIndex = line.indexOf("&");
-            int undIndex = line.indexOf("_");
-            int commIndex = line.indexOf(",");
-            int aposIndex = line.indexOf("$");
-            int tildIndex = line.indexOf("~");
-            int percIndex = line.indexOf("%");
-            int semiIndex = line.indexOf(";");
-
-            if (endIndex == -1 || hampIndex == -1 || undIndex == -1 || 
-                commIndex == -1 || aposIndex == -1 || tildIndex == -1 || 
-                percIndex == -1 || semiIndex == -1) {
-                return null;
-            }
-
-            TransactionData txData = new TransactionData();
-            txData.senderWallet = line.substring(endIndex + 2, hampIndex);
-            txData.amount = line.substring(hampIndex + 1, undIndex);
-            txData.receiverWallet = line.substring(undIndex + 1, commIndex);
-            txData.gas = line.substring(commIndex + 1, aposIndex);
-            txData.txHash = line.substring(aposIndex + 1, tildIndex);
-            txData.transHash = line.substring(tildIndex + 1, percIndex);
-            txData.newPublicKey = line.substring(percIndex + 1, semiIndex);
+        return isWellFormed(txLine.reset(line)) ? transactionData(txLine) : null;
+    }
 
-            return txData;
-        } catch (Exception e) {
-            System.err.println("Error parsing transaction line: " + e.getMessage());
-            return null;
+    /**
+     * True if all delimiters are present and each field starts no later than it ends
+     */
+    private static boolean isWellFormed(TransactionLine tx) {
+        if (!tx.hasAllDelimiters()) {
+            return false;
+        }
+        if (!tx.hasOrderedFields()) {
+            System.err.println("Error parsing transaction line: fields out of order");
+            return false;
         }
+        return true;
     }
 
-    private boolean isValidTransactionData(TransactionData txData) {
+    private static TransactionData transactionData(TransactionLine tx) {
+        TransactionData txData = new TransactionData();
+        txData.senderWallet = tx.text(tx.nameEnd() + 2, tx.ampersand());
+        txData.amount = tx.text(tx.ampersand() + 1, tx.underscore());
+        txData.receiverWallet = tx.text(tx.underscore() + 1, tx.comma());
+        txData.gas = tx.text(tx.comma() + 1, tx.dollar());
+        txData.txHash = tx.text(tx.dollar() + 1, tx.tilde());
+        txData.transHash = tx.text(tx.tilde() + 1, tx.percent());
+        txData.newPublicKey = tx.text(tx.percent() + 1, tx.semicolon());
+        return txData;
+    }
+
+    private boolean isValidTransactionData(TransactionLine tx) {
+        int senderStart = tx.nameEnd() + 2;
+        int amountStart = tx.ampersand() + 1;
+        int receiverStart = tx.underscore() + 1;
+        int gasStart = tx.comma() + 1;
+
         // Check for leading zeros
-        if (txData.senderWallet.startsWith("0") || txData.amount.startsWith("0") || 
-            txData.receiverWallet.startsWith("0") || txData.gas.startsWith("0")) {
+        if (tx.startsWithZero(senderStart, tx.ampersand()) || tx.startsWithZero(amountStart, tx.underscore()) ||
+            tx.startsWithZero(receiverStart, tx.comma()) || tx.startsWithZero(gasStart, tx.dollar())) {
             System.out.println("Rejected: values cannot start with zero");
             return false;
         }
 
+        // Plain digit strings without a leading zero are nonzero and numeric; no need to parse them
+        if (tx.isDigits(senderStart, tx.ampersand()) && tx.isDigits(amountStart, tx.underscore()) &&
+            tx.isDigits(receiverStart, tx.comma()) && tx.isDigits(gasStart, tx.dollar())) {
+            return true;
+        }
+
+        // Anything else is rejected; BigInteger tells which way, as it always has
         try {
-            BigInteger senderWalletBig = new BigInteger(txData.senderWallet);
-            BigInteger amountBig = new BigInteger(txData.amount);
-            BigInteger receiverWalletBig = new BigInteger(txData.receiverWallet);
-            BigInteger gasBig = new BigInteger(txData.gas);
+            BigInteger senderWalletBig = new BigInteger(tx.text(senderStart, tx.ampersand()));
+            BigInteger amountBig = new BigInteger(tx.text(amountStart, tx.underscore()));
+            BigInteger receiverWalletBig = new BigInteger(tx.text(receiverStart, tx.comma()));
+            BigInteger gasBig = new BigInteger(tx.text(gasStart, tx.dollar()));
 
             if (senderWalletBig.equals(ZERO) || amountBig.equals(ZERO) || 
                 receiverWalletBig.equals(ZERO) || gasBig.equals(ZERO)) {
@@ -547,18 +393,9 @@ public class ProcessTxs {
                 return false;
             }
 
-            // Check if all values are numeric
-            Pattern pattern = Pattern.compile("[0-9]*");
-            boolean isValid = pattern.matcher(txData.senderWallet).matches() &&
-                             pattern.matcher(txData.amount).matches() &&
-                             pattern.matcher(txData.receiverWallet).matches() &&
-                             pattern.matcher(txData.gas).matches();
-            
-            if (!isValid) {
-                System.out.println("Rejected: non-numeric values detected");
-            }
-            
-            return isValid;
+            // Parsed but not plain digits: signed or non-ASCII digits
+            System.out.println("Rejected: non-numeric values detected");
+            return false;
 
         } catch (NumberFormatException e) {
             System.out.println("Rejected: invalid number format");
@@ -566,41 +403,27 @@ public class ProcessTxs {
         }
     }
 
-    private void processWithPlayerInfo(TransactionData txData, String currentLine, BufferedWriter writer) throws IOException {
-        File playerInfoFile = new File("ledger_KMC/player_info.log");
-        
-        try (BufferedReader playerReader = new BufferedReader(new FileReader(playerInfoFile))) {
-            String line;
-            while ((line = playerReader.readLine()) != null) {
-                if (line.equals(spName)) {
-                    if (processPlayerTransaction(txData, currentLine, writer, playerReader)) {
-                        break;
-                    }
-                }
-            }
-        }
+    private boolean processWithPlayerInfo(TransactionData txData) throws IOException {
+        PlayerStateStore.Player player = PlayerStateStore.byName(spName);
+        return player != null && processPlayerTransaction(txData, player);
     }
 
-    private boolean processPlayerTransaction(TransactionData txData, String currentLine, 
-                                           BufferedWriter writer, BufferedReader playerReader) throws IOException {
+    private boolean processPlayerTransaction(TransactionData txData, PlayerStateStore.Player player) {
         try {
-            String walletLine = playerReader.readLine();
+            String walletLine = player.wallet;
             if (walletLine == null) return false;
             
             String playerWallet = walletLine.substring(1);
             
             if (txData.senderWallet.equals(playerWallet)) {
-                String balanceLine = playerReader.readLine();
+                String balanceLine = player.balance;
                 if (balanceLine == null) return false;
                 
-                BigInteger balance = new BigInteger(balanceLine);
-                BigInteger totalCost = new BigInteger(txData.amount).add(new BigInteger(txData.gas));
-                
-                if (totalCost.compareTo(balance) < 0) {
-                    return processValidTransaction(txData, currentLine, writer, playerReader, balance);
+                if (coversCost(balanceLine, txData.amount, txData.gas)) {
+                    return processValidTransaction(txData, player);
                 } else {
                     System.out.println("Rejected: insufficient balance");
-                    return true;
+                    return false;
                 }
             }
         } catch (Exception e) {
@@ -609,24 +432,35 @@ public class ProcessTxs {
         return false;
     }
 
-    private boolean processValidTransaction(TransactionData txData, String currentLine, 
-                                          BufferedWriter writer, BufferedReader playerReader, 
-                                          BigInteger balance) throws IOException {
+    /**
+     * True if amount + gas is strictly less than the balance
+     */
+    private static boolean coversCost(String balance, String amount, String gas) {
         try {
-            String txNumLine = playerReader.readLine();
-            String minedBsLine = playerReader.readLine();
-            String publicKeyLine = playerReader.readLine();
+            Uint128 totalCost = Uint128.parse(amount).add(Uint128.parse(gas));
+            return totalCost.compareTo(Uint128.parse(balance)) < 0;
+        } catch (NumberFormatException | ArithmeticException e) {
+            // Negative, signed or oversized values are compared the way BigInteger reads them
+            BigInteger balanceBig = new BigInteger(balance);
+            BigInteger totalCost = new BigInteger(amount).add(new BigInteger(gas));
+            return totalCost.compareTo(balanceBig) < 0;
+        }
+    }
+
+    private boolean processValidTransaction(TransactionData txData, PlayerStateStore.Player player) {
+        try {
+            String txNumLine = player.txNum;
+            String minedBsLine = player.mined;
+            String publicKeyLine = player.publicKey;
             
             if (txNumLine == null || minedBsLine == null || publicKeyLine == null) {
                 return false;
             }
             
             int txNum = Integer.parseInt(txNumLine);
-            BigInteger txNumBig = new BigInteger(txNumLine);
             
             if (validateTransactionHash(txData, txNum, publicKeyLine)) {
-                writer.write(currentLine + System.lineSeparator());
-                updatePlayerInfo(txData, txNum + 1, balance);
+                updatePlayerInfo(txNum + 1);
                 
                 // Handle wrapping transaction
                 handleWrappingTransaction(txData);
@@ -642,45 +476,57 @@ public class ProcessTxs {
     }
 
     private boolean validateTransactionHash(TransactionData txData, int txNum, String publicKey) {
-        try {
-            String calculatedHash;
-            
-            if (txNum == 0) {
-                calculatedHash = toHexString(getSHA(txData.txHash));
-            } else {
-                int iterations = (txNum + 1) % 1000;
-                if (iterations == 0) iterations = 1001; // Special case for multiples of 1000
-                
-                calculatedHash = txData.txHash;
-                for (int i = 0; i < iterations; i++) {
-                    calculatedHash = toHexString(getSHA(calculatedHash));
-                }
-            }
-            
-            return publicKey.equals(calculatedHash);
-            
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("Hash algorithm not available: " + e.getMessage());
-            return false;
+        Boolean verdict = proofVerdicts.get(verdictKey(txData.txHash, txNum, publicKey));
+        boolean valid = verdict != null ? verdict : verifyProof(txData.senderWallet, txData.txHash, txNum, publicKey);
+
+        if (valid) {
+            preimageCache.record(txData.senderWallet, txNum, publicKey, txData.txHash);
+        }
+        return valid;
+    }
+
+    /**
+     * Checks a txHash against the public key. Reads but never writes the preimage
+     * cache, so it is safe to call from the parallel verification stage.
+     */
+    private boolean verifyProof(String senderWallet, String txHash, int txNum, String publicKey) {
+        // Fast path: one hash up to the preimage revealed by this player's previous tx
+        if (preimageCache.verifiesNext(senderWallet, txNum, publicKey, txHash)) {
+            return true;
+        }
+        return publicKey.equals(HashChain.iterate(txHash, chainLength(txNum)));
+    }
+
+    /**
+     * A verdict depends only on the txHash, txNum and public key it was checked against
+     */
+    private static String verdictKey(String txHash, int txNum, String publicKey) {
+        return txHash + "|" + txNum + "|" + publicKey;
+    }
+
+    /**
+     * Number of hashes from a txHash at the given txNum up to the stored public key
+     */
+    static int chainLength(int txNum) {
+        if (txNum == 0) {
+            return 1;
         }
+        int iterations = (txNum + 1) % 1000;
+        if (iterations == 0) iterations = 1001; // Special case for multiples of 1000
+        return iterations;
     }
 
-    private void updatePlayerInfo(TransactionData txData, int newTxNum, BigInteger balance) {
+    private void updatePlayerInfo(int newTxNum) {
         try {
-            String playerInfo = Files.readString(PLAYER_INFO_PATH);
-            String oldInfo = spName + "\n@" + txData.senderWallet + "\n" + balance + "\n" + (newTxNum - 1);
-            String newInfo = spName + "\n@" + txData.senderWallet + "\n" + balance + "\n" + newTxNum;
-            
-            Files.writeString(PLAYER_INFO_PATH, playerInfo.replace(oldInfo, newInfo), StandardCharsets.UTF_8);
+            PlayerStateStore.setTxNum(spName, String.valueOf(newTxNum));
         } catch (IOException e) {
             System.err.println("Error updating player info: " + e.getMessage());
         }
     }
 
     private void handleWrappingTransaction(TransactionData txData) {
-        BigInteger receiverWallet = new BigInteger(txData.receiverWallet);
-        
-        if (txData.transHash.startsWith("KMC") && receiverWallet.equals(WRAP_ADDRESS)) {
+        // receiverWallet passed isValidTransactionData, so it is plain digits without leading zeros
+        if (txData.transHash.startsWith("KMC") && txData.receiverWallet.equals(WRAP_ADDRESS)) {
             try {
                 String solAddress = txData.transHash.substring(3);
                 Path wrappedPath = Paths.get("ledger_KMC/wrapped.log");
@@ -716,34 +562,11 @@ public class ProcessTxs {
         String newPublicKey;
     }
     
-    // Helper class for transaction ordering - UPDATED
-    private static class TransactionEntry {
-        final String originalLine;
-        final BigInteger gasAmount;
-        final String playerName;
-        final String senderWallet;
-        final String txHash;
-        
-        TransactionEntry(String originalLine, BigInteger gasAmount, String playerName, String senderWallet, String txHash) {
-            this.originalLine = originalLine;
-            this.gasAmount = gasAmount;
-            this.playerName = playerName;
-            this.senderWallet = senderWallet;
-            this.txHash = txHash;
-        }
-    }
-
     public static byte[] getSHA(String input) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        return md.digest(input.getBytes(StandardCharsets.UTF_8));
+        return HashChain.sha256(input);
     }
 
     public static String toHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        while (hexString.length() < 64) {
-            hexString.insert(0, '0');
-        }
-        return hexString.toString();
+        return HashChain.toHex(hash);
     }
 }
\ No newline at end of file
@@ -0,0 +1,593 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of every txHash and transHash (the $...~ and ~...% fields) already written
+ * to the ledger, so a replayed transaction is turned away at admission without
+ * scanning ledger_current.txt and the KMC1..KMC12 archives. A wrap carries
+ * "KMC" + its Solana address as transHash; that is reused by every wrap to the
+ * same address, so it is neither indexed nor looked up.
+ *
+ * Hashes are keyed by the first 128 bits of their SHA-256. The keys live in
+ * replay_index.dat, a memory-mapped open-addressing table of 24-byte slots (key and
+ * the ledger position it was found at), behind an in-memory Bloom filter that
+ * answers most lookups without touching the table. replay_index.log records how far
+ * into ledger_current.txt the table reaches. Top100Processor catches the index up
+ * after appending a block, a rewind drops what lay past the new end, and an index
+ * that no longer matches the ledger is rebuilt by scanning it in parallel.
+ */
+public class ReplayIndex {
+
+    private static final Path LEDGER_CURRENT_PATH = Paths.get("ledger_KMC/ledger_current.txt");
+    private static final Path TABLE_PATH = Paths.get("ledger_KMC/replay_index.dat");
+    private static final Path TABLE_TEMP_PATH = Paths.get("ledger_KMC/replay_index.dat.tmp");
+    private static final Path STATE_PATH = Paths.get("ledger_KMC/replay_index.log");
+    private static final Path STATE_TEMP_PATH = Paths.get("ledger_KMC/replay_index.log.tmp");
+    private static final String LEDGER_BASE_DIR = "ledger_KMC";
+    private static final int TOTAL_KMC_DIRECTORIES = 12;
+    private static final Charset PLATFORM = Charset.defaultCharset();
+    private static final byte[] NULL_HASH = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRAP_PREFIX = "KMC".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int SLOT_BYTES = 24;
+    private static final int MIN_SLOTS = 1 << 16;
+    private static final int BLOOM_HASHES = 6;
+    private static final int CHUNK_BYTES = 8 << 20;
+    // A longer run without a separator is not a transaction entry
+    private static final int MAX_ENTRY_BYTES = 4096;
+
+    // Shared by the startup rebuild and every per-block catch-up
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static MappedByteBuffer table;
+    private static int slots;
+    private static int count;
+    private static long[] bloom;
+
+    // Archived hashes sit at position 0 and ledger_current.txt offset o at base + o;
+    // the table holds everything below base + indexed
+    private static long base;
+    private static long indexed;
+    private static String tail;
+    private static String archives;
+    private static boolean opened;
+
+    private ReplayIndex() {
+    }
+
+    /**
+     * Loads the index, rebuilding it if the ledger changed underneath, and indexes
+     * whatever was appended since it was last saved
+     */
+    public static synchronized void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        try {
+            if (!load() || !matchesLedger()) {
+                rebuild();
+            }
+            catchUp();
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error opening replay index: " + e.getMessage());
+            table = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            table = null;
+        }
+    }
+
+    /**
+     * True if this transaction's txHash or transHash is already in the ledger
+     */
+    public static synchronized boolean isReplay(TransactionLine tx) {
+        open();
+        if (table == null) {
+            return false;
+        }
+        return contains(tx, tx.dollar() + 1, tx.tilde()) || contains(tx, tx.tilde() + 1, tx.percent());
+    }
+
+    /**
+     * Indexes the entries appended to ledger_current.txt since the last call
+     */
+    public static synchronized void indexAppended() {
+        open();
+        if (table == null) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error updating replay index: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Forgets what lay past length after ledger_current.txt was truncated there
+     */
+    static synchronized void rewound(long length) {
+        try {
+            if (table == null && !load()) {
+                // Nothing saved to correct; the next open() builds from the ledger
+                return;
+            }
+            if (length < indexed) {
+                indexed = length;
+                rehash(slots, base + indexed);
+            }
+            saveState();
+        } catch (IOException e) {
+            System.err.println("Error rewinding replay index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps ledger_current.txt's hashes as archived ones before the file is cleared,
+     * once LedgerBuilder has copied it into the archives
+     */
+    public static synchronized void rolledOver() {
+        indexAppended();
+        if (table == null) {
+            return;
+        }
+        try {
+            base += indexed;
+            indexed = 0;
+            archives = fingerprint(archiveFiles());
+            saveState();
+        } catch (IOException e) {
+            System.err.println("Error rolling over replay index: " + e.getMessage());
+        }
+    }
+
+    private static boolean contains(TransactionLine tx, int start, int end) {
+        byte[] hash = tx.text(start, end).getBytes(PLATFORM);
+        if (!isIndexed(hash, 0, hash.length)) {
+            return false;
+        }
+        long[] key = key(hash, 0, hash.length);
+        if (!mightContain(key[0], key[1])) {
+            return false;
+        }
+        int mask = slots - 1;
+        for (int slot = (int) key[0] & mask; ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT_BYTES;
+            long lo = table.getLong(at + 8);
+            if (lo == 0) {
+                return false;
+            }
+            if (lo == key[1] && table.getLong(at) == key[0]) {
+                return table.getLong(at + 16) < base + indexed;
+            }
+        }
+    }
+
+    /**
+     * Indexes ledger_current.txt from where the table ends, rebuilding instead if
+     * the file no longer starts with what was indexed
+     */
+    private static void catchUp() throws IOException, ExecutionException, InterruptedException {
+        if (!Files.exists(LEDGER_CURRENT_PATH)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == indexed) {
+                return;
+            }
+            if (size < indexed || !tail.equals(LedgerCurrentDigest.tailDigest(channel, indexed))) {
+                System.out.println("Ledger changed since the replay index was saved, rebuilding it");
+                rebuild();
+                return;
+            }
+        }
+
+        List<Found> found = scanInParallel(List.of(LEDGER_CURRENT_PATH), indexed, base);
+        for (Found f : found) {
+            insertAll(f);
+        }
+        indexed = found.isEmpty() ? indexed : found.get(found.size() - 1).stop;
+        saveState();
+    }
+
+    /**
+     * Scans the archives and ledger_current.txt in parallel into a fresh table
+     */
+    private static void rebuild() throws IOException, ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        List<Path> archived = archiveFiles();
+        List<Found> found = scanInParallel(archived, 0, 0);
+        // Archived entries are at position 0, so the current ledger starts at 1
+        List<Found> current = Files.exists(LEDGER_CURRENT_PATH)
+                ? scanInParallel(List.of(LEDGER_CURRENT_PATH), 0, 1) : List.of();
+        found.addAll(current);
+
+        long total = 0;
+        for (Found f : found) {
+            total += f.size / 3;
+        }
+        int newSlots = MIN_SLOTS;
+        while (newSlots < total * 4) {
+            newSlots <<= 1;
+        }
+        MappedByteBuffer fresh = createTable(newSlots);
+        table = fresh;
+        slots = newSlots;
+        count = 0;
+        bloom = new long[newSlots / 8];
+        for (Found f : found) {
+            insertAll(f);
+        }
+        replaceTable();
+
+        base = 1;
+        indexed = current.isEmpty() ? 0 : current.get(current.size() - 1).stop;
+        archives = fingerprint(archived);
+        saveState();
+        System.out.println("Rebuilt replay index: " + count + " hashes from " + (archived.size() + 1)
+                + " files in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Splits the files from offset from into chunks and scans them on all cores.
+     * Each file's last result tells where its last complete entry ends.
+     */
+    private static List<Found> scanInParallel(List<Path> files, long from, long positionBase)
+            throws IOException, ExecutionException, InterruptedException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : files) {
+            long size = Files.size(file);
+            for (long start = from; start < size; start += CHUNK_BYTES) {
+                chunks.add(new Chunk(file, start, Math.min(start + CHUNK_BYTES, size), size, positionBase));
+            }
+        }
+        if (chunks.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return SCAN_POOL.submit(() -> chunks.parallelStream().map(chunk -> {
+            try {
+                return scan(chunk);
+            } catch (IOException e) {
+                throw new IllegalStateException(chunk.file + ": " + e.getMessage(), e);
+            }
+        }).collect(Collectors.toList())).get();
+    }
+
+    /**
+     * Finds the hashes of the entries that start in the chunk. Entries are separated
+     * by spaces or line breaks; one still being written at the end of the file is
+     * left for the next scan.
+     */
+    private static Found scan(Chunk chunk) throws IOException {
+        long from = Math.max(0, chunk.start - 1);
+        long to = Math.min(chunk.fileSize, chunk.end + MAX_ENTRY_BYTES);
+        byte[] buf = new byte[(int) (to - from)];
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            ByteBuffer target = ByteBuffer.wrap(buf);
+            while (target.hasRemaining() && channel.read(target, from + target.position()) > 0) {
+                // Keep reading until the buffer is full
+            }
+        }
+
+        // One char per byte, so offsets into text are offsets into buf
+        String text = new String(buf, StandardCharsets.ISO_8859_1);
+        TransactionLine tx = new TransactionLine();
+        Found found = new Found();
+        int i = (int) (chunk.start - from);
+        if (i > 0 && !isSeparator(buf[i - 1])) {
+            // The rest of an entry that the previous chunk scans
+            while (i < buf.length && !isSeparator(buf[i])) {
+                i++;
+            }
+        }
+        int limit = (int) (chunk.end - from);
+        while (i < limit) {
+            if (isSeparator(buf[i])) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < buf.length && !isSeparator(buf[end])) {
+                end++;
+            }
+            if (end == buf.length) {
+                break;
+            }
+            long position = chunk.positionBase == 0 ? 0 : chunk.positionBase + from + i;
+            tx.reset(text, i, end);
+            if (tx.hasTransferDelimiters() && tx.dollar() < tx.tilde() && tx.tilde() < tx.percent()) {
+                found.add(buf, tx.dollar() + 1, tx.tilde(), position);
+                found.add(buf, tx.tilde() + 1, tx.percent(), position);
+            }
+            i = end + 1;
+        }
+        found.stop = from + Math.min(i, limit);
+        return found;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * "null" is what every non-wrapping transaction carries as its transHash, and a
+     * wrap's "KMC" + Solana address is not a one-time hash
+     */
+    private static boolean isIndexed(byte[] hash, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        if (end - start >= WRAP_PREFIX.length && hash[start] == WRAP_PREFIX[0]
+                && hash[start + 1] == WRAP_PREFIX[1] && hash[start + 2] == WRAP_PREFIX[2]) {
+            return false;
+        }
+        if (end - start != NULL_HASH.length) {
+            return true;
+        }
+        for (int i = 0; i < NULL_HASH.length; i++) {
+            if (hash[start + i] != NULL_HASH[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * First 128 bits of the SHA-256, the low word made odd so a used slot is never all zero
+     */
+    private static long[] key(byte[] hash, int start, int end) {
+        MessageDigest sha = SHA256.get();
+        sha.update(hash, start, end - start);
+        ByteBuffer digest = ByteBuffer.wrap(sha.digest());
+        return new long[] {digest.getLong(0), digest.getLong(8) | 1};
+    }
+
+    private static void insertAll(Found found) throws IOException {
+        for (int i = 0; i < found.size; i += 3) {
+            insert(found.data[i], found.data[i + 1], found.data[i + 2]);
+        }
+    }
+
+    private static void insert(long hi, long lo, long position) throws IOException {
+        if ((count + 1) * 2L > slots) {
+            rehash(slots * 2, Long.MAX_VALUE);
+        }
+        int mask = slots - 1;
+        for (int slot = (int) hi & mask; ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT_BYTES;
+            long slotLo = table.getLong(at + 8);
+            if (slotLo == 0) {
+                table.putLong(at, hi);
+                table.putLong(at + 8, lo);
+                table.putLong(at + 16, position);
+                count++;
+                addToBloom(hi, lo);
+                return;
+            }
+            if (slotLo == lo && table.getLong(at) == hi) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies the entries below cutoff into a new table of newSlots slots
+     */
+    private static void rehash(int newSlots, long cutoff) throws IOException {
+        MappedByteBuffer old = table;
+        int oldSlots = slots;
+        table = createTable(newSlots);
+        slots = newSlots;
+        count = 0;
+        bloom = new long[newSlots / 8];
+        for (int slot = 0; slot < oldSlots; slot++) {
+            int at = slot * SLOT_BYTES;
+            long lo = old.getLong(at + 8);
+            if (lo != 0 && old.getLong(at + 16) < cutoff) {
+                insert(old.getLong(at), lo, old.getLong(at + 16));
+            }
+        }
+        replaceTable();
+    }
+
+    private static MappedByteBuffer createTable(int newSlots) throws IOException {
+        Files.deleteIfExists(TABLE_TEMP_PATH);
+        try (FileChannel channel = FileChannel.open(TABLE_TEMP_PATH, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) newSlots * SLOT_BYTES);
+        }
+    }
+
+    private static void replaceTable() throws IOException {
+        table.force();
+        Files.move(TABLE_TEMP_PATH, TABLE_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Bloom filter bits are taken from the key, which is already a uniform hash
+     */
+    private static void addToBloom(long hi, long lo) {
+        int mask = bloom.length * 64 - 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) (lo + i * (hi | 1)) & mask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(long hi, long lo) {
+        int mask = bloom.length * 64 - 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (int) (lo + i * (hi | 1)) & mask;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the saved table and fills the Bloom filter from it
+     */
+    private static boolean load() throws IOException {
+        if (!Files.exists(STATE_PATH) || !Files.exists(TABLE_PATH)) {
+            return false;
+        }
+        String[] parts = Files.readString(STATE_PATH, StandardCharsets.US_ASCII).trim().split(" ");
+        long tableSize = Files.size(TABLE_PATH);
+        if (parts.length != 4 || tableSize % SLOT_BYTES != 0 || Long.bitCount(tableSize / SLOT_BYTES) != 1
+                || tableSize / SLOT_BYTES < MIN_SLOTS || tableSize / SLOT_BYTES > 1 << 26) {
+            return false;
+        }
+        try {
+            base = Long.parseLong(parts[0]);
+            indexed = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        tail = parts[2];
+        archives = parts[3];
+
+        try (FileChannel channel = FileChannel.open(TABLE_PATH, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, tableSize);
+        }
+        slots = (int) (tableSize / SLOT_BYTES);
+        count = 0;
+        bloom = new long[slots / 8];
+        boolean stale = false;
+        for (int slot = 0; slot < slots; slot++) {
+            int at = slot * SLOT_BYTES;
+            long lo = table.getLong(at + 8);
+            if (lo != 0) {
+                count++;
+                addToBloom(table.getLong(at), lo);
+                stale |= table.getLong(at + 16) >= base + indexed;
+            }
+        }
+        // Entries past the saved end were written by a catch-up that never finished
+        if (stale) {
+            rehash(slots, base + indexed);
+        }
+        return true;
+    }
+
+    private static boolean matchesLedger() throws IOException {
+        if (!archives.equals(fingerprint(archiveFiles()))) {
+            return false;
+        }
+        if (!Files.exists(LEDGER_CURRENT_PATH)) {
+            return indexed == 0;
+        }
+        try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+            return channel.size() >= indexed && tail.equals(LedgerCurrentDigest.tailDigest(channel, indexed));
+        }
+    }
+
+    private static void saveState() throws IOException {
+        tail = "-";
+        if (Files.exists(LEDGER_CURRENT_PATH)) {
+            try (FileChannel channel = FileChannel.open(LEDGER_CURRENT_PATH, StandardOpenOption.READ)) {
+                tail = LedgerCurrentDigest.tailDigest(channel, indexed);
+            }
+        }
+        Files.writeString(STATE_TEMP_PATH, base + " " + indexed + " " + tail + " " + archives + "\n",
+                StandardCharsets.US_ASCII);
+        Files.move(STATE_TEMP_PATH, STATE_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<Path> archiveFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i <= TOTAL_KMC_DIRECTORIES; i++) {
+            Path directory = Paths.get(LEDGER_BASE_DIR, "KMC" + i);
+            if (Files.isDirectory(directory)) {
+                try (Stream<Path> listing = Files.list(directory)) {
+                    listing.filter(Files::isRegularFile).sorted().forEach(files::add);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Digest of the archive files' names, sizes and modification times
+     */
+    private static String fingerprint(List<Path> files) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Path file : files) {
+            sb.append(file).append(' ').append(Files.size(file)).append(' ')
+                    .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+        }
+        return HashChain.sha256Hex(sb.toString());
+    }
+
+    /**
+     * A range of a file to scan; positionBase 0 marks an archive
+     */
+    private static class Chunk {
+        final Path file;
+        final long start;
+        final long end;
+        final long fileSize;
+        final long positionBase;
+
+        Chunk(Path file, long start, long end, long fileSize, long positionBase) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.fileSize = fileSize;
+            this.positionBase = positionBase;
+        }
+    }
+
+    /**
+     * Keys found in a chunk as (hi, lo, position) triples, and the offset scanning stopped at
+     */
+    private static class Found {
+        long[] data = new long[96];
+        int size;
+        long stop;
+
+        void add(byte[] buf, int start, int end, long position) {
+            if (!isIndexed(buf, start, end)) {
+                return;
+            }
+            if (size + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            long[] key = key(buf, start, end);
+            data[size++] = key[0];
+            data[size++] = key[1];
+            data[size++] = position;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The players with the largest balances, kept up to date as blocks commit.
+ *
+ * Every account with a numeric balance sits in a TreeSet ordered by balance
+ * (largest first, earlier record on ties) with a map from record to its entry,
+ * so a balance change is one O(log n) remove and insert and the top K is read
+ * off the front. PlayerStateStore builds the index when it loads and updates it
+ * at each commit; the top K are then written to rich_list.log tagged with the
+ * player_info.log they describe, so a fresh process can answer straight away.
+ */
+public class RichList {
+
+    public static final int K = 100;
+
+    private static final Path RICH_LIST_PATH = Paths.get("ledger_KMC/rich_list.log");
+    private static final Path RICH_LIST_TEMP_PATH = Paths.get("ledger_KMC/rich_list.log.tmp");
+    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
+    private static final int RECORD_LINES = 6;
+
+    private static final Comparator<Holder> ORDER = Comparator
+            .comparing((Holder h) -> h.balance, Comparator.reverseOrder())
+            .thenComparingInt(h -> h.record);
+
+    private static final TreeSet<Holder> ranked = new TreeSet<>(ORDER);
+    private static final Map<Integer, Holder> byRecord = new HashMap<>();
+    private static boolean built;
+
+    private RichList() {
+    }
+
+    /**
+     * The count largest holders, at most K, largest first
+     */
+    public static List<Holder> top(int count) throws IOException {
+        count = Math.min(count, K);
+        synchronized (RichList.class) {
+            if (!built) {
+                List<Holder> saved = readSaved(count);
+                if (saved != null) {
+                    return saved;
+                }
+            }
+        }
+
+        // Loading the store (or reloading a replaced file) builds the index
+        PlayerStateStore.ensureLoaded();
+        synchronized (RichList.class) {
+            return first(count);
+        }
+    }
+
+    /**
+     * Indexes every record of player_info.log
+     */
+    static synchronized void rebuild(List<String> lines) {
+        ranked.clear();
+        byRecord.clear();
+        for (int start = 0; start < lines.size(); start += RECORD_LINES) {
+            update(start, lines);
+        }
+        built = true;
+    }
+
+    /**
+     * Forgets the index, after player_info.log was replaced
+     */
+    static synchronized void reset() {
+        ranked.clear();
+        byRecord.clear();
+        built = false;
+    }
+
+    /**
+     * Re-ranks the record starting at line start after its balance changed
+     */
+    static synchronized void update(int start, List<String> lines) {
+        Holder old = byRecord.remove(start);
+        if (old != null) {
+            ranked.remove(old);
+        }
+        if (start + 2 >= lines.size()) {
+            return;
+        }
+        try {
+            Holder holder = new Holder(start, lines.get(start), lines.get(start + 1), Uint128.parse(lines.get(start + 2)));
+            ranked.add(holder);
+            byRecord.put(start, holder);
+        } catch (NumberFormatException e) {
+            // Negative or malformed balances are not ranked
+        }
+    }
+
+    /**
+     * Writes the top K for the player_info.log of this size and modification time
+     */
+    static synchronized void save(long textSize, long textModified) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("player_info.log ").append(textSize).append(' ').append(textModified).append('\n');
+        for (Holder holder : first(K)) {
+            sb.append(holder.name).append('\t').append(holder.wallet).append('\t');
+            holder.balance.appendTo(sb).append('\n');
+        }
+        try {
+            Files.writeString(RICH_LIST_TEMP_PATH, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(RICH_LIST_TEMP_PATH, RICH_LIST_PATH, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving rich list: " + e.getMessage());
+        }
+    }
+
+    private static List<Holder> first(int count) {
+        List<Holder> top = new ArrayList<>(count);
+        Iterator<Holder> it = ranked.iterator();
+        while (top.size() < count && it.hasNext()) {
+            top.add(it.next());
+        }
+        return top;
+    }
+
+    /**
+     * The saved list if it was written for the current player_info.log
+     */
+    private static List<Holder> readSaved(int count) {
+        if (!Files.exists(RICH_LIST_PATH) || !Files.exists(PLAYER_INFO_PATH)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(RICH_LIST_PATH, StandardCharsets.UTF_8)) {
+            BasicFileAttributes attrs = Files.readAttributes(PLAYER_INFO_PATH, BasicFileAttributes.class);
+            String expected = "player_info.log " + attrs.size() + " " + attrs.lastModifiedTime().toMillis();
+            if (!expected.equals(reader.readLine())) {
+                return null;
+            }
+
+            List<Holder> top = new ArrayList<>(count);
+            String line;
+            while (top.size() < count && (line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    return null;
+                }
+                top.add(new Holder(-1, parts[0], parts[1], Uint128.parse(parts[2])));
+            }
+            return top;
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One ranked player: name, @wallet and balance
+     */
+    public static class Holder {
+        public final String name;
+        public final String wallet;
+        public final Uint128 balance;
+        final int record;
+
+        Holder(int record, String name, String wallet, Uint128 balance) {
+            this.record = record;
+            this.name = name;
+            this.wallet = wallet;
+            this.balance = balance;
+        }
+    }
+}
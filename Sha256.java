@@ -0,0 +1,212 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pure-Java incremental SHA-256 whose midstate can be copied and saved.
+ *
+ * MessageDigest hides its internal state, so it can neither be checkpointed
+ * to disk nor resumed after a restart. This class keeps the eight chaining
+ * words, the pending partial block and the byte count in plain fields and
+ * can export them as a single text token.
+ */
+public final class Sha256 {
+
+    static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int BLOCK_BYTES = 64;
+
+    private final int[] state = new int[8];
+    private final byte[] buffer = new byte[BLOCK_BYTES];
+    private final int[] schedule = new int[64];
+    private int bufferLength;
+    private long byteCount;
+
+    public Sha256() {
+        System.arraycopy(INITIAL_STATE, 0, state, 0, 8);
+    }
+
+    /**
+     * Number of message bytes fed in so far
+     */
+    public long byteCount() {
+        return byteCount;
+    }
+
+    public void update(byte[] input, int offset, int length) {
+        byteCount += length;
+
+        if (bufferLength > 0) {
+            int take = Math.min(length, BLOCK_BYTES - bufferLength);
+            System.arraycopy(input, offset, buffer, bufferLength, take);
+            bufferLength += take;
+            offset += take;
+            length -= take;
+            if (bufferLength < BLOCK_BYTES) {
+                return;
+            }
+            compress(state, buffer, 0, schedule);
+            bufferLength = 0;
+        }
+
+        while (length >= BLOCK_BYTES) {
+            compress(state, input, offset, schedule);
+            offset += BLOCK_BYTES;
+            length -= BLOCK_BYTES;
+        }
+
+        System.arraycopy(input, offset, buffer, 0, length);
+        bufferLength = length;
+    }
+
+    /**
+     * Returns an independent copy carrying the same midstate
+     */
+    public Sha256 copy() {
+        Sha256 copy = new Sha256();
+        System.arraycopy(state, 0, copy.state, 0, 8);
+        System.arraycopy(buffer, 0, copy.buffer, 0, bufferLength);
+        copy.bufferLength = bufferLength;
+        copy.byteCount = byteCount;
+        return copy;
+    }
+
+    /**
+     * Finalizes a copy of the current state, leaving this instance free to keep absorbing
+     */
+    public byte[] digest() {
+        Sha256 finalizer = copy();
+        long bitLength = byteCount << 3;
+
+        byte[] padding = new byte[BLOCK_BYTES * 2];
+        int padLength = (bufferLength < 56 ? 56 : 120) - bufferLength;
+        padding[0] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) {
+            padding[padLength + i] = (byte) (bitLength >>> (56 - 8 * i));
+        }
+        finalizer.update(padding, 0, padLength + 8);
+
+        byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            int word = finalizer.state[i];
+            out[4 * i] = (byte) (word >>> 24);
+            out[4 * i + 1] = (byte) (word >>> 16);
+            out[4 * i + 2] = (byte) (word >>> 8);
+            out[4 * i + 3] = (byte) word;
+        }
+        return out;
+    }
+
+    /**
+     * Serializes the midstate as "byteCount:stateHex:pendingHex"
+     */
+    public String exportState() {
+        byte[] words = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            words[4 * i] = (byte) (state[i] >>> 24);
+            words[4 * i + 1] = (byte) (state[i] >>> 16);
+            words[4 * i + 2] = (byte) (state[i] >>> 8);
+            words[4 * i + 3] = (byte) state[i];
+        }
+        byte[] pending = new byte[bufferLength * 2];
+        HashChain.encodeHex(buffer, 0, bufferLength, pending, 0);
+        return byteCount + ":" + HashChain.toHex(words) + ":" + new String(pending, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Restores a midstate written by exportState()
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Sha256 importState(String token) {
+        String[] parts = token.split(":", -1);
+        if (parts.length != 3 || parts[1].length() != 64 || parts[2].length() % 2 != 0
+                || parts[2].length() >= BLOCK_BYTES * 2) {
+            throw new IllegalArgumentException("Malformed SHA-256 state");
+        }
+
+        Sha256 sha = new Sha256();
+        sha.byteCount = Long.parseLong(parts[0]);
+        byte[] words = decodeHex(parts[1]);
+        for (int i = 0; i < 8; i++) {
+            sha.state[i] = ((words[4 * i] & 0xff) << 24) | ((words[4 * i + 1] & 0xff) << 16)
+                    | ((words[4 * i + 2] & 0xff) << 8) | (words[4 * i + 3] & 0xff);
+        }
+        byte[] pending = decodeHex(parts[2]);
+        System.arraycopy(pending, 0, sha.buffer, 0, pending.length);
+        sha.bufferLength = pending.length;
+        if (sha.byteCount < 0 || sha.byteCount % BLOCK_BYTES != sha.bufferLength) {
+            throw new IllegalArgumentException("Inconsistent SHA-256 state");
+        }
+        return sha;
+    }
+
+    private static byte[] decodeHex(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Malformed hex in SHA-256 state");
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+
+    /**
+     * One SHA-256 compression of the 64-byte block at offset into state
+     */
+    static void compress(int[] state, byte[] block, int offset, int[] w) {
+        for (int t = 0; t < 16; t++) {
+            int i = offset + 4 * t;
+            w[t] = ((block[i] & 0xff) << 24) | ((block[i + 1] & 0xff) << 16)
+                    | ((block[i + 2] & 0xff) << 8) | (block[i + 3] & 0xff);
+        }
+        for (int t = 16; t < 64; t++) {
+            int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+
+        for (int t = 0; t < 64; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int temp1 = h + s1 + ch + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int temp2 = s0 + maj;
+
+            h = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+}
@@ -0,0 +1,242 @@
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Multi-lane SHA-256 hash-chain kernel for links that are exactly 64 ASCII
+ * characters, i.e. every link of a KMC proof chain.
+ *
+ * A single chain is latency-bound since each link needs the previous digest.
+ * This kernel advances LANES independent chains together, with their rounds
+ * interleaved in one loop body so the CPU can overlap them. A 64-byte message is
+ * always two compression blocks and the second one is pure padding, so its
+ * message schedule is folded into PAD_KW once. Lanes that finish pick up the
+ * next pending chain, so uneven chain lengths don't leave lanes idle.
+ *
+ * When the JVM compiles MessageDigest to the CPU's SHA instructions that path
+ * is still faster than any pure-Java kernel; see preferred().
+ */
+public final class Sha256Lanes {
+
+    public static final int LANES = 4;
+
+    private static final int[] K = Sha256.K;
+    private static final int[] IV = Sha256.INITIAL_STATE;
+    private static final int[] PAD_KW = new int[64];
+    private static final int[] HEX_PAIRS = new int[256];
+    private static final boolean PREFERRED = !shaIntrinsicsEnabled();
+
+    static {
+        // Second block of a 64-byte message: 0x80, zeros, bit length 512
+        int[] w = new int[64];
+        w[0] = 0x80000000;
+        w[15] = 512;
+        for (int t = 16; t < 64; t++) {
+            w[t] = w[t - 16] + sigma0(w[t - 15]) + w[t - 7] + sigma1(w[t - 2]);
+        }
+        for (int t = 0; t < 64; t++) {
+            PAD_KW[t] = K[t] + w[t];
+        }
+
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int b = 0; b < 256; b++) {
+            HEX_PAIRS[b] = (digits[b >>> 4] << 8) | digits[b & 0xf];
+        }
+    }
+
+    // Per lane: 16 message words, 64 schedule words, 8 state words
+    private final int[] msg = new int[16 * LANES];
+    private final int[] w = new int[64 * LANES];
+    private final int[] state = new int[8 * LANES];
+
+    /**
+     * True if this kernel beats MessageDigest on this JVM, i.e. SHA-256
+     * intrinsics are off or unavailable
+     */
+    public static boolean preferred() {
+        return PREFERRED;
+    }
+
+    /**
+     * True if the kernel can hash this string as a chain link
+     */
+    public static boolean accepts(String link) {
+        if (link.length() != HashChain.HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HashChain.HEX_LENGTH; i++) {
+            if (link.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks every chain, returning HashChain.iterate(seeds[i], counts[i]) for each.
+     * Every seed must satisfy accepts().
+     */
+    public String[] iterate(String[] seeds, int[] counts) {
+        String[] results = new String[seeds.length];
+        int[] job = new int[LANES];
+        int[] remaining = new int[LANES];
+        int next = 0;
+        int active = 0;
+
+        for (int lane = 0; lane < LANES; lane++) {
+            job[lane] = -1;
+        }
+
+        while (true) {
+            // Refill idle lanes; zero-length chains finish without hashing
+            for (int lane = 0; lane < LANES; lane++) {
+                while (job[lane] < 0 && next < seeds.length) {
+                    int j = next++;
+                    if (counts[j] <= 0) {
+                        results[j] = seeds[j];
+                        continue;
+                    }
+                    load(lane, seeds[j]);
+                    job[lane] = j;
+                    remaining[lane] = counts[j];
+                    active++;
+                }
+            }
+            if (active == 0) {
+                return results;
+            }
+
+            step();
+
+            for (int lane = 0; lane < LANES; lane++) {
+                if (job[lane] >= 0 && --remaining[lane] == 0) {
+                    results[job[lane]] = store(lane);
+                    job[lane] = -1;
+                    active--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes the 64-byte message of every lane and writes each digest back as
+     * its next message in lowercase hex. Idle lanes are hashed too; it is cheaper
+     * than branching per lane.
+     */
+    private void step() {
+        for (int lane = 0; lane < LANES; lane++) {
+            int m = lane * 16;
+            int o = lane * 64;
+            System.arraycopy(msg, m, w, o, 16);
+            for (int t = 16; t < 64; t++) {
+                w[o + t] = w[o + t - 16] + sigma0(w[o + t - 15]) + w[o + t - 7] + sigma1(w[o + t - 2]);
+            }
+            System.arraycopy(IV, 0, state, lane * 8, 8);
+        }
+
+        compress(state, w, false);
+        compress(state, w, true);
+
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int i = 0; i < 8; i++) {
+                int word = state[lane * 8 + i];
+                msg[lane * 16 + 2 * i] = (HEX_PAIRS[word >>> 24] << 16) | HEX_PAIRS[(word >>> 16) & 0xff];
+                msg[lane * 16 + 2 * i + 1] = (HEX_PAIRS[(word >>> 8) & 0xff] << 16) | HEX_PAIRS[word & 0xff];
+            }
+        }
+    }
+
+    /**
+     * One compression per lane with the four lanes' rounds interleaved. With pad set
+     * the block is the constant padding block and w is ignored.
+     */
+    private static void compress(int[] st, int[] w, boolean pad) {
+        int a0 = st[0], b0 = st[1], c0 = st[2], d0 = st[3], e0 = st[4], f0 = st[5], g0 = st[6], h0 = st[7];
+        int a1 = st[8], b1 = st[9], c1 = st[10], d1 = st[11], e1 = st[12], f1 = st[13], g1 = st[14], h1 = st[15];
+        int a2 = st[16], b2 = st[17], c2 = st[18], d2 = st[19], e2 = st[20], f2 = st[21], g2 = st[22], h2 = st[23];
+        int a3 = st[24], b3 = st[25], c3 = st[26], d3 = st[27], e3 = st[28], f3 = st[29], g3 = st[30], h3 = st[31];
+
+        for (int t = 0; t < 64; t++) {
+            int k = pad ? PAD_KW[t] : K[t];
+            int kw0 = pad ? k : k + w[0 + t];
+            int kw1 = pad ? k : k + w[64 + t];
+            int kw2 = pad ? k : k + w[128 + t];
+            int kw3 = pad ? k : k + w[192 + t];
+            int t10 = h0 + bigSigma1(e0) + ((e0 & f0) ^ (~e0 & g0)) + kw0;
+            int t20 = bigSigma0(a0) + ((a0 & b0) ^ (a0 & c0) ^ (b0 & c0));
+            h0 = g0; g0 = f0; f0 = e0; e0 = d0 + t10;
+            d0 = c0; c0 = b0; b0 = a0; a0 = t10 + t20;
+            int t11 = h1 + bigSigma1(e1) + ((e1 & f1) ^ (~e1 & g1)) + kw1;
+            int t21 = bigSigma0(a1) + ((a1 & b1) ^ (a1 & c1) ^ (b1 & c1));
+            h1 = g1; g1 = f1; f1 = e1; e1 = d1 + t11;
+            d1 = c1; c1 = b1; b1 = a1; a1 = t11 + t21;
+            int t12 = h2 + bigSigma1(e2) + ((e2 & f2) ^ (~e2 & g2)) + kw2;
+            int t22 = bigSigma0(a2) + ((a2 & b2) ^ (a2 & c2) ^ (b2 & c2));
+            h2 = g2; g2 = f2; f2 = e2; e2 = d2 + t12;
+            d2 = c2; c2 = b2; b2 = a2; a2 = t12 + t22;
+            int t13 = h3 + bigSigma1(e3) + ((e3 & f3) ^ (~e3 & g3)) + kw3;
+            int t23 = bigSigma0(a3) + ((a3 & b3) ^ (a3 & c3) ^ (b3 & c3));
+            h3 = g3; g3 = f3; f3 = e3; e3 = d3 + t13;
+            d3 = c3; c3 = b3; b3 = a3; a3 = t13 + t23;
+        }
+
+        st[0] += a0; st[1] += b0; st[2] += c0; st[3] += d0;
+        st[4] += e0; st[5] += f0; st[6] += g0; st[7] += h0;
+        st[8] += a1; st[9] += b1; st[10] += c1; st[11] += d1;
+        st[12] += e1; st[13] += f1; st[14] += g1; st[15] += h1;
+        st[16] += a2; st[17] += b2; st[18] += c2; st[19] += d2;
+        st[20] += e2; st[21] += f2; st[22] += g2; st[23] += h2;
+        st[24] += a3; st[25] += b3; st[26] += c3; st[27] += d3;
+        st[28] += e3; st[29] += f3; st[30] += g3; st[31] += h3;
+    }
+
+    private void load(int lane, String link) {
+        for (int i = 0; i < 16; i++) {
+            int p = 4 * i;
+            msg[lane * 16 + i] = (link.charAt(p) << 24) | (link.charAt(p + 1) << 16)
+                    | (link.charAt(p + 2) << 8) | link.charAt(p + 3);
+        }
+    }
+
+    private String store(int lane) {
+        byte[] out = new byte[HashChain.HEX_LENGTH];
+        for (int i = 0; i < 16; i++) {
+            int word = msg[lane * 16 + i];
+            out[4 * i] = (byte) (word >>> 24);
+            out[4 * i + 1] = (byte) (word >>> 16);
+            out[4 * i + 2] = (byte) (word >>> 8);
+            out[4 * i + 3] = (byte) word;
+        }
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean shaIntrinsicsEnabled() {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            try {
+                return Boolean.parseBoolean(bean.getVMOption("UseSHA256Intrinsics").getValue());
+            } catch (IllegalArgumentException e) {
+                // Diagnostic flag not exposed; UseSHA is on whenever the CPU has SHA instructions
+                return Boolean.parseBoolean(bean.getVMOption("UseSHA").getValue());
+            }
+        } catch (RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static int sigma0(int x) {
+        return Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+    }
+
+    private static int sigma1(int x) {
+        return Integer.rotateRight(x, 17) ^ Integer.rotateRight(x, 19) ^ (x >>> 10);
+    }
+
+    private static int bigSigma0(int x) {
+        return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13) ^ Integer.rotateRight(x, 22);
+    }
+
+    private static int bigSigma1(int x) {
+        return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11) ^ Integer.rotateRight(x, 25);
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Streams files into SHA-256 in fixed-size chunks instead of materializing them
+ * as Strings, so the *_HASH stages run in constant heap.
+ *
+ * The old code hashed Files.readString(...).getBytes(UTF_8), which is the raw
+ * file bytes when the file is valid UTF-8 and an exception otherwise. Every
+ * stream here is therefore validated as UTF-8 on the fly, and a null result
+ * tells the caller to take its legacy path so error behaviour is unchanged.
+ */
+public final class StreamingDigest {
+
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    /**
+     * Anything that absorbs bytes, e.g. MessageDigest::update or Sha256::update
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void update(byte[] input, int offset, int length);
+    }
+
+    private StreamingDigest() {
+    }
+
+    /**
+     * Double SHA-256 of the concatenated contents of the files, or null if any is not valid UTF-8
+     */
+    public static String doubleHash(Path... files) throws IOException {
+        MessageDigest digest = HashChain.newDigest();
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (!absorb(channel, 0, channel.size(), digest::update)) {
+                    return null;
+                }
+            }
+        }
+        return HashChain.sha256Hex(HashChain.toHex(digest.digest()));
+    }
+
+    /**
+     * Double SHA-256 of the file with all line terminators removed, its lines
+     * joined as they are read, without an intermediate file.
+     * Returns null if that output would not be valid UTF-8.
+     */
+    public static String doubleHashJoinedLines(Path file) throws IOException {
+        MessageDigest digest = HashChain.newDigest();
+        Utf8Validator validator = new Utf8Validator();
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                digest.update(b, off, len);
+                validator.feed(b, off, len);
+            }
+        };
+
+        // Same default-charset decode and encode as the FileReader/FileWriter pair it replaces
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file));
+             Writer writer = new OutputStreamWriter(sink)) {
+            char[] in = new char[CHUNK_BYTES];
+            char[] out = new char[CHUNK_BYTES];
+            int read;
+            while ((read = reader.read(in)) != -1) {
+                int kept = 0;
+                for (int i = 0; i < read; i++) {
+                    char c = in[i];
+                    if (c != '\n' && c != '\r') {
+                        out[kept++] = c;
+                    }
+                }
+                writer.write(out, 0, kept);
+            }
+        }
+
+        if (!validator.isValid()) {
+            return null;
+        }
+        return HashChain.sha256Hex(HashChain.toHex(digest.digest()));
+    }
+
+    /**
+     * Feeds [from, to) of the channel into the sink in fixed-size chunks
+     * @return false if those bytes are not valid UTF-8 on their own
+     */
+    public static boolean absorb(FileChannel channel, long from, long to, Sink sink) throws IOException {
+        Utf8Validator validator = new Utf8Validator();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+        long position = from;
+
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+
+            sink.update(buffer.array(), 0, read);
+            if (!validator.feed(buffer.array(), 0, read)) {
+                return false;
+            }
+        }
+        return validator.isValid();
+    }
+
+    /**
+     * Incremental UTF-8 well-formedness check matching the JDK's strict decoder:
+     * no overlong forms, no surrogates, nothing above U+10FFFF.
+     */
+    static final class Utf8Validator {
+        private int pending;
+        private int lower = 0x80;
+        private int upper = 0xBF;
+        private boolean failed;
+
+        boolean feed(byte[] input, int offset, int length) {
+            for (int i = offset; i < offset + length && !failed; i++) {
+                int b = input[i] & 0xff;
+                if (pending > 0) {
+                    if (b < lower || b > upper) {
+                        failed = true;
+                    }
+                    pending--;
+                    lower = 0x80;
+                    upper = 0xBF;
+                } else if (b >= 0x80) {
+                    if (b >= 0xC2 && b <= 0xDF) {
+                        pending = 1;
+                    } else if (b >= 0xE0 && b <= 0xEF) {
+                        pending = 2;
+                        if (b == 0xE0) lower = 0xA0;
+                        if (b == 0xED) upper = 0x9F;
+                    } else if (b >= 0xF0 && b <= 0xF4) {
+                        pending = 3;
+                        if (b == 0xF0) lower = 0x90;
+                        if (b == 0xF4) upper = 0x8F;
+                    } else {
+                        failed = true;
+                    }
+                }
+            }
+            return !failed;
+        }
+
+        /**
+         * True if everything fed so far forms complete, well-formed sequences
+         */
+        boolean isValid() {
+            return !failed && pending == 0;
+        }
+    }
+}
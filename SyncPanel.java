@@ -170,6 +170,11 @@ public class SyncPanel extends JFrame implements ActionListener {
         if (isValidFile(ledgerCurrentTxt)) {
             copyFile(ledgerCurrentTxt, new File(LEDGER_DIR, LEDGER_CURRENT_TXT));
         }
+        
+        // The imported ledger is not an append of the old one
+        LedgerCurrentDigest.invalidate();
+        PlayerStateStore.invalidate();
+        BlockMerkleTree.rebuildFromLedger();
     }
     
     /**
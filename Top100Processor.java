@@ -10,14 +10,7 @@ import java.math.BigInteger;
 public class Top100Processor {
     
     // Constants for parsing transaction data
-    private static final String END_OF_NAME = "> ";
-    private static final String DELIMITER_HASH = "&";
-    private static final String DELIMITER_UNDERSCORE = "_";
-    private static final String DELIMITER_COMMA = ",";
-    private static final String DELIMITER_DOLLAR = "$";
-    private static final String DELIMITER_TILDE = "~";
-    private static final String DELIMITER_PERCENT = "%";
-    private static final String DELIMITER_SEMICOLON = ";";
+    private static final int NAME_START = 41;
     private static final String WALLET_PREFIX = "@";
     private static final String NULL_TRANSACTION = "null";
     private static final int MAX_TRANSACTIONS = 100;
@@ -25,13 +18,13 @@ public class Top100Processor {
     // File paths
     private static final Path LATEST_TRANSACTIONS_PATH = Paths.get("Program_Files/latestTxs4.log");
     private static final Path LEDGER_CURRENT_PATH = Paths.get("ledger_KMC/ledger_current.txt");
-    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
     private static final Path LOCAL_PLAYER_PATH = Paths.get("localplayer.txt");
     private static final Path WALLET_ADDRESS_PATH = Paths.get("wallet_address.log");
     private static final Path PLAYER_BALANCE_PATH = Paths.get("player_balance.log");
     private static final Path PLAYER_TXS_PATH = Paths.get("player_txs.log");
     
     private int transactionCount = 0;
+    private final TransactionLine txLine = new TransactionLine();
     
     public Top100Processor() throws IOException {
         processTransactions();
@@ -56,6 +49,9 @@ public class Top100Processor {
             }
         }
         
+        // Index the block's hashes now that they are in the ledger
+        ReplayIndex.indexAppended();
+        
         updatePlayerFiles();
     }
     
@@ -63,33 +59,25 @@ public class Top100Processor {
      * Parses a transaction line and extracts relevant data
      */
     private TransactionData parseTransactionLine(String line) {
-        try {
-            int endIndex = line.indexOf(END_OF_NAME);
-            int hashIndex = line.indexOf(DELIMITER_HASH);
-            int underscoreIndex = line.indexOf(DELIMITER_UNDERSCORE);
-            int commaIndex = line.indexOf(DELIMITER_COMMA);
-            int dollarIndex = line.indexOf(DELIMITER_DOLLAR);
-            int tildeIndex = line.indexOf(DELIMITER_TILDE);
-            int percentIndex = line.indexOf(DELIMITER_PERCENT);
-            int semicolonIndex = line.indexOf(DELIMITER_SEMICOLON);
-            
-            if (endIndex == -1 || hashIndex == -1 || underscoreIndex == -1 || 
-                commaIndex == -1 || dollarIndex == -1 || tildeIndex == -1 || 
-                percentIndex == -1 || semicolonIndex == -1) {
-                return null; // Invalid line format
-            }
-            
-            String senderName = line.substring(41, endIndex);
-            String amount = line.substring(hashIndex + 1, underscoreIndex);
-            String receiverWallet = line.substring(underscoreIndex + 1, commaIndex);
-            String gas = line.substring(commaIndex + 1, dollarIndex);
-            String transactionHash = line.substring(tildeIndex + 1, percentIndex);
-            
-            return new TransactionData(senderName, amount, receiverWallet, gas, transactionHash);
-        } catch (StringIndexOutOfBoundsException e) {
+        TransactionLine tx = txLine.reset(line);
+        if (!tx.hasAllDelimiters()) {
+            return null; // Invalid line format
+        }
+        
+        // Each field has to start no later than it ends
+        if (tx.nameEnd() < NAME_START || tx.underscore() <= tx.ampersand() || tx.comma() <= tx.underscore() ||
+            tx.dollar() <= tx.comma() || tx.percent() <= tx.tilde()) {
             System.err.println("Error parsing transaction line: " + line);
             return null;
         }
+        
+        String senderName = tx.text(NAME_START, tx.nameEnd());
+        String amount = tx.text(tx.ampersand() + 1, tx.underscore());
+        String receiverWallet = tx.text(tx.underscore() + 1, tx.comma());
+        String gas = tx.text(tx.comma() + 1, tx.dollar());
+        String transactionHash = tx.text(tx.tilde() + 1, tx.percent());
+        
+        return new TransactionData(senderName, amount, receiverWallet, gas, transactionHash);
     }
     
     /**
@@ -112,11 +100,11 @@ public class Top100Processor {
             transactionCount++;
         }
         
-        // Write transaction to ledger
-        int writeIndex = originalLine.indexOf(END_OF_NAME);
+        // Write transaction to ledger; txLine still holds this line's offsets
+        int writeIndex = txLine.nameEnd();
         if (writeIndex != -1) {
             String transactionEntry = originalLine.substring(writeIndex + 2, 
-                originalLine.indexOf(DELIMITER_SEMICOLON) + 1);
+                txLine.semicolon() + 1);
             writer.write(transactionEntry + " ");
         }
         
@@ -128,18 +116,21 @@ public class Top100Processor {
     }
     
     /**
-     * Updates the sender's balance by deducting amount and gas
+     * Debits the sender by amount and gas; the block's changes are netted and
+     * committed together when KMCoin flushes the player state store
      */
     private void updateSenderBalance(TransactionData transaction) throws IOException {
         PlayerInfo senderInfo = findPlayerByName(transaction.senderName);
         if (senderInfo != null) {
-            BigInteger currentBalance = new BigInteger(senderInfo.balance);
-            BigInteger amountSent = new BigInteger(transaction.amount);
-            BigInteger gasBurned = new BigInteger(transaction.gas);
-            BigInteger totalDeduction = amountSent.add(gasBurned);
-            BigInteger newBalance = currentBalance.subtract(totalDeduction);
-            
-            updatePlayerBalance(transaction.senderName, senderInfo.wallet, senderInfo.balance, newBalance.toString());
+            try {
+                Uint128 totalDeduction = Uint128.parse(transaction.amount).add(Uint128.parse(transaction.gas));
+                PlayerStateStore.debit(transaction.senderName, totalDeduction);
+            } catch (NumberFormatException | ArithmeticException e) {
+                // Signed or oversized values are read the way BigInteger always read them
+                BigInteger amountSent = new BigInteger(transaction.amount);
+                BigInteger gasBurned = new BigInteger(transaction.gas);
+                PlayerStateStore.debit(transaction.senderName, amountSent.add(gasBurned));
+            }
         }
     }
     
@@ -151,63 +142,28 @@ public class Top100Processor {
         PlayerInfo receiverInfo = findPlayerByWallet(receiverWalletWithPrefix);
         
         if (receiverInfo != null) {
-            BigInteger currentBalance = new BigInteger(receiverInfo.balance);
-            BigInteger amountReceived = new BigInteger(transaction.amount);
-            BigInteger newBalance = currentBalance.add(amountReceived);
-            
-            updatePlayerBalance(receiverInfo.name, receiverWalletWithPrefix, receiverInfo.balance, newBalance.toString());
+            try {
+                PlayerStateStore.credit(receiverInfo.name, Uint128.parse(transaction.amount));
+            } catch (NumberFormatException e) {
+                PlayerStateStore.credit(receiverInfo.name, new BigInteger(transaction.amount));
+            }
         }
     }
     
     /**
-     * Finds a player by name in the player info file
+     * Finds a player by name in the player state store
      */
     private PlayerInfo findPlayerByName(String playerName) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PLAYER_INFO_PATH.toFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(playerName)) {
-                    String wallet = reader.readLine();
-                    String balance = reader.readLine();
-                    return new PlayerInfo(playerName, wallet, balance);
-                }
-            }
-        }
-        return null;
+        PlayerStateStore.Player player = PlayerStateStore.byName(playerName);
+        return player != null ? new PlayerInfo(player.name, player.wallet, player.balance) : null;
     }
     
     /**
-     * Finds a player by wallet address in the player info file
+     * Finds a player by wallet address in the player state store
      */
     private PlayerInfo findPlayerByWallet(String walletAddress) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PLAYER_INFO_PATH.toFile()))) {
-            String line;
-            String previousLine = null;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(walletAddress)) {
-                    String balance = reader.readLine();
-                    return new PlayerInfo(previousLine, walletAddress, balance);
-                }
-                previousLine = line;
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * Updates a player's balance in the player info file
-     */
-    private void updatePlayerBalance(String playerName, String wallet, String oldBalance, String newBalance) 
-            throws IOException {
-        try {
-            String fileContent = Files.readString(PLAYER_INFO_PATH);
-            String oldEntry = playerName + "\n" + wallet + "\n" + oldBalance;
-            String newEntry = playerName + "\n" + wallet + "\n" + newBalance;
-            String updatedContent = fileContent.replace(oldEntry, newEntry);
-            Files.writeString(PLAYER_INFO_PATH, updatedContent);
-        } catch (IOException e) {
-            System.err.println("Error updating player balance: " + e.getMessage());
-        }
+        PlayerStateStore.Player player = PlayerStateStore.byWallet(walletAddress);
+        return player != null ? new PlayerInfo(player.name, player.wallet, player.balance) : null;
     }
     
     /**
@@ -236,17 +192,8 @@ public class Top100Processor {
      * Gets the transaction count for a player
      */
     private String getPlayerTransactions(String playerName) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PLAYER_INFO_PATH.toFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(playerName)) {
-                    reader.readLine(); // Skip wallet
-                    reader.readLine(); // Skip balance
-                    return reader.readLine(); // Return transactions
-                }
-            }
-        }
-        return null;
+        PlayerStateStore.Player player = PlayerStateStore.byName(playerName);
+        return player != null ? player.txNum : null;
     }
     
     /**
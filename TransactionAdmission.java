@@ -0,0 +1,83 @@
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admission control for transactions copied from the chat into latestTxs.log.
+ *
+ * admit() runs, in one pass over the line, the stateless checks ProcessTxs would
+ * otherwise reject it for later (more than one '>', over 303 characters, missing
+ * or out-of-order fields, amounts that are not plain nonzero numbers), then drops transactions whose hashes ReplayIndex finds already in
+ * the ledger. Every check depends only on the line and the ledger, never on when
+ * the chat was polled, so validators that polled at different times still agree
+ * on what a block may contain. Counters outlive a single TransactionProcessor,
+ * which is created afresh every loop.
+ */
+public class TransactionAdmission {
+
+    public static final String ACCEPTED = "accepted";
+    public static final String MULTIPLE_NAME_MARKERS = "multiple '>'";
+    public static final String OVERSIZED = "oversized";
+    public static final String MALFORMED = "malformed";
+    public static final String NOT_A_NUMBER = "zero or non-numeric";
+    public static final String REPLAY = "replay";
+
+    private static final Charset PLATFORM = Charset.defaultCharset();
+    private static final int MAX_LENGTH = 303;
+
+    private static final Map<String, Long> counts = new LinkedHashMap<>();
+    private static final TransactionLine txLine = new TransactionLine();
+
+    private TransactionAdmission() {
+    }
+
+    /**
+     * Decides whether a line, with its chat prefix, goes on to ProcessTxs.
+     * Returns ACCEPTED or the reason it was rejected, and counts it either way.
+     */
+    public static synchronized String admit(String line) {
+        String reason = check(line);
+        counts.merge(reason, 1L, Long::sum);
+        return reason;
+    }
+
+    /**
+     * Accepted and rejected transactions so far, by reason
+     */
+    public static synchronized Map<String, Long> counts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    private static String check(String line) {
+        // Checked as ProcessTxs will read it back from latestTxs.log in the platform charset
+        if (!ProcessTxs.isAscii(line)) {
+            line = new String(line.getBytes(PLATFORM), PLATFORM);
+        }
+
+        TransactionLine tx = txLine.reset(line);
+        if (line.indexOf('>', tx.nameClose() + 1) != -1) {
+            return MULTIPLE_NAME_MARKERS;
+        }
+        if (line.length() > MAX_LENGTH) {
+            return OVERSIZED;
+        }
+        if (!tx.hasOrderedFields()) {
+            return MALFORMED;
+        }
+        if (!isPlainNumber(tx, tx.nameEnd() + 2, tx.ampersand()) || !isPlainNumber(tx, tx.ampersand() + 1, tx.underscore())
+                || !isPlainNumber(tx, tx.underscore() + 1, tx.comma()) || !isPlainNumber(tx, tx.comma() + 1, tx.dollar())) {
+            return NOT_A_NUMBER;
+        }
+        if (ReplayIndex.isReplay(tx)) {
+            return REPLAY;
+        }
+        return ACCEPTED;
+    }
+
+    /**
+     * Plain digits without a leading zero, which is what ProcessTxs accepts as an amount
+     */
+    private static boolean isPlainNumber(TransactionLine tx, int start, int end) {
+        return tx.isDigits(start, end) && !tx.startsWithZero(start, end);
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Reusable view of a chat transaction line:
+ * "<name> wallet&amount_receiver,gas$txHash~transHash%newPublicKey;".
+ *
+ * reset() records where each delimiter first occurs, once per line, instead of
+ * every parser of this format finding them again with its own run of indexOf
+ * calls and substrings. Fields are then read as offset ranges: digits are checked and
+ * amounts parsed in place, and a String is only made for a field a caller
+ * actually keeps. One instance can be reset for line after line without
+ * allocating; it is not thread-safe.
+ */
+public final class TransactionLine {
+
+    private CharSequence line;
+    private int nameOpen;
+    private int nameClose;
+    private int nameEnd;
+    private int ampersand;
+    private int underscore;
+    private int comma;
+    private int dollar;
+    private int tilde;
+    private int percent;
+    private int semicolon;
+
+    public TransactionLine reset(CharSequence line) {
+        return reset(line, 0, line.length());
+    }
+
+    /**
+     * Scans line[from, to). Offsets are into the whole line, -1 where a delimiter is missing.
+     */
+    public TransactionLine reset(CharSequence line, int from, int to) {
+        this.line = line;
+        if (line instanceof String && to == line.length()) {
+            // String.indexOf is vectorized, so a scan per delimiter beats one scalar pass;
+            // it can't be stopped at to, so a short range of a long line is scanned below
+            String text = (String) line;
+            nameOpen = find(text, '<', from, to);
+            nameClose = find(text, '>', from, to);
+            nameEnd = nameClose < 0 ? -1 : find(text, "> ", nameClose, to);
+            ampersand = find(text, '&', from, to);
+            underscore = find(text, '_', from, to);
+            comma = find(text, ',', from, to);
+            dollar = find(text, '$', from, to);
+            tilde = find(text, '~', from, to);
+            percent = find(text, '%', from, to);
+            semicolon = find(text, ';', from, to);
+            return this;
+        }
+
+        nameOpen = nameClose = nameEnd = -1;
+        ampersand = underscore = comma = dollar = tilde = percent = semicolon = -1;
+        for (int i = from; i < to; i++) {
+            switch (line.charAt(i)) {
+                case '<':
+                    if (nameOpen < 0) nameOpen = i;
+                    break;
+                case '>':
+                    if (nameClose < 0) nameClose = i;
+                    if (nameEnd < 0 && i + 1 < to && line.charAt(i + 1) == ' ') nameEnd = i;
+                    break;
+                case '&':
+                    if (ampersand < 0) ampersand = i;
+                    break;
+                case '_':
+                    if (underscore < 0) underscore = i;
+                    break;
+                case ',':
+                    if (comma < 0) comma = i;
+                    break;
+                case '$':
+                    if (dollar < 0) dollar = i;
+                    break;
+                case '~':
+                    if (tilde < 0) tilde = i;
+                    break;
+                case '%':
+                    if (percent < 0) percent = i;
+                    break;
+                case ';':
+                    if (semicolon < 0) semicolon = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return this;
+    }
+
+    private static int find(String text, char c, int from, int to) {
+        int index = text.indexOf(c, from);
+        return index < to ? index : -1;
+    }
+
+    private static int find(String text, String s, int from, int to) {
+        int index = text.indexOf(s, from);
+        return index >= 0 && index + s.length() <= to ? index : -1;
+    }
+
+    /** First '<' */
+    public int nameOpen() { return nameOpen; }
+
+    /** First '>' */
+    public int nameClose() { return nameClose; }
+
+    /** First "> ", where the sender wallet starts two characters later */
+    public int nameEnd() { return nameEnd; }
+
+    public int ampersand() { return ampersand; }
+
+    public int underscore() { return underscore; }
+
+    public int comma() { return comma; }
+
+    public int dollar() { return dollar; }
+
+    public int tilde() { return tilde; }
+
+    public int percent() { return percent; }
+
+    public int semicolon() { return semicolon; }
+
+    /**
+     * True if "> " and all seven field delimiters are present
+     */
+    public boolean hasAllDelimiters() {
+        return nameEnd >= 0 && hasFieldDelimiters();
+    }
+
+    /**
+     * True if every field starts no later than it ends: "> " then & _ , $ ~ % ; in that order
+     */
+    public boolean hasOrderedFields() {
+        return hasAllDelimiters() && ampersand >= nameEnd + 2 && underscore > ampersand && comma > underscore
+                && dollar > comma && tilde > dollar && percent > tilde && semicolon > percent;
+    }
+
+    /**
+     * True if the seven delimiters $ ~ % ; , _ & are present
+     */
+    public boolean hasFieldDelimiters() {
+        return ampersand >= 0 && underscore >= 0 && comma >= 0 && dollar >= 0
+                && tilde >= 0 && percent >= 0 && semicolon >= 0;
+    }
+
+    /**
+     * True if the transfer delimiters & _ , $ are present
+     */
+    public boolean hasTransferDelimiters() {
+        return ampersand >= 0 && underscore >= 0 && comma >= 0 && dollar >= 0;
+    }
+
+    /**
+     * True if line[start, end) is one or more decimal digits
+     */
+    public boolean isDigits(int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True if line[start, end) starts with '0'
+     */
+    public boolean startsWithZero(int start, int end) {
+        return start < end && line.charAt(start) == '0';
+    }
+
+    /**
+     * True if line[start, end) is exactly text
+     */
+    public boolean regionEquals(int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * line[start, end) as an amount; NumberFormatException unless it is plain digits under 2^128
+     */
+    public Uint128 amount(int start, int end) {
+        return Uint128.parse(line, start, end);
+    }
+
+    /**
+     * line[start, end) as a String, for fields that are kept
+     */
+    public String text(int start, int end) {
+        return line.subSequence(start, end).toString();
+    }
+}
@@ -4,6 +4,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Map;
 
 public class TransactionProcessor {
     private static final String INPUT_FILE = "outputTx.txt";
@@ -37,15 +38,25 @@ public class TransactionProcessor {
             // Read all lines from input file
             List<String> lines = Files.readAllLines(inputPath);
             
-            // Process each line
+            // Process each line; only admitted transactions go on to ProcessTxs
             StringBuilder output = new StringBuilder();
+            boolean sawTransaction = false;
             for (String line : lines) {
                 if (isValidTransaction(line)) {
+                    sawTransaction = true;
+                    String reason = TransactionAdmission.admit(LOG_PREFIX + line);
+                    if (!TransactionAdmission.ACCEPTED.equals(reason)) {
+                        System.out.println("Rejected tx (" + reason + ") = " + line);
+                        continue;
+                    }
                     String formattedLine = LOG_PREFIX + line + System.lineSeparator();
                     output.append(formattedLine);
                     System.out.println("Found a tx = " + line);
                 }
             }
+            if (sawTransaction) {
+                printAdmissionCounts();
+            }
             
             // Write all valid transactions to output file
             if (output.length() > 0) {
@@ -79,6 +90,17 @@ public class TransactionProcessor {
         return true;
     }
     
+    /**
+     * Print how many transactions have been admitted and rejected, by reason
+     */
+    private void printAdmissionCounts() {
+        StringBuilder sb = new StringBuilder("Admission totals:");
+        for (Map.Entry<String, Long> entry : TransactionAdmission.counts().entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        System.out.println(sb);
+    }
+    
     /**
      * Clear the input file contents
      */
@@ -4,13 +4,11 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
@@ -25,7 +23,6 @@ public class TxPanelB extends JFrame implements ActionListener {
     
     // Constants
     private static final int HASH_ITERATIONS = 2002;
-    private static final int HASH_LENGTH = 64;
     private static final int BATCH_SIZE = 1000;
     private static final String PROGRAM_FILES_DIR = "Program_Files";
     private static final String LEDGER_DIR = "ledger_KMC";
@@ -84,7 +81,7 @@ public class TxPanelB extends JFrame implements ActionListener {
     
     // Buttons
     private JButton generateTxButton, generateWrapButton, refreshButton, exitButton;
-    private JButton pendingTxsButton;
+    private JButton pendingTxsButton, richListButton;
     
     /**
      * Constructor initializes the GUI and loads initial data
@@ -94,6 +91,7 @@ public class TxPanelB extends JFrame implements ActionListener {
         loadPlayerInfo();
         loadBlockchainInfo();
         clearTxPanelLog();
+        prefetchWalletChain();
     }
     
     /**
@@ -178,6 +176,7 @@ public class TxPanelB extends JFrame implements ActionListener {
         
         // Create special button for pending transactions
         pendingTxsButton = createStyledButton("📋 View All Pending Transactions", ACCENT_COLOR);
+        richListButton = createStyledButton("🏆 View Top " + RichList.K + " Holders", ACCENT_COLOR);
         
         // Add action listeners
         generateTxButton.addActionListener(this);
@@ -185,6 +184,7 @@ public class TxPanelB extends JFrame implements ActionListener {
         refreshButton.addActionListener(this);
         exitButton.addActionListener(this);
         pendingTxsButton.addActionListener(this);
+        richListButton.addActionListener(this);
         
         // Add click handler for pending transactions area
         addPendingTxsClickHandler();
@@ -303,53 +303,85 @@ public class TxPanelB extends JFrame implements ActionListener {
                 }
             }
             
-            // Create popup dialog
-            JDialog popup = new JDialog(this, "Pending Transactions Details", true);
-            popup.setLayout(new BorderLayout());
-            popup.getContentPane().setBackground(BACKGROUND_COLOR);
+            showTextPopup("Pending Transactions Details", "Transaction Details",
+                txContent.isEmpty() ? "No pending transactions" : txContent);
             
-            // Create text area for detailed view
-            JTextArea detailArea = new JTextArea(15, 50);
-            detailArea.setBackground(FIELD_COLOR);
-            detailArea.setForeground(TEXT_COLOR);
-            detailArea.setFont(new Font("Consolas", Font.PLAIN, 11));
-            detailArea.setEditable(false);
-            detailArea.setLineWrap(true);
-            detailArea.setWrapStyleWord(true);
-            detailArea.setText(txContent.isEmpty() ? "No pending transactions" : txContent);
-            
-            JScrollPane scrollPane = new JScrollPane(detailArea);
-            scrollPane.setBorder(BorderFactory.createTitledBorder(
-                BorderFactory.createLineBorder(ACCENT_COLOR),
-                "Transaction Details",
-                TitledBorder.LEFT,
-                TitledBorder.TOP,
-                new Font("Segoe UI", Font.BOLD, 12),
-                ACCENT_COLOR
-            ));
-            
-            // Create close button
-            JButton closeButton = createStyledButton("Close", BUTTON_COLOR);
-            closeButton.addActionListener(e -> popup.dispose());
-            
-            JPanel buttonPanel = new JPanel(new FlowLayout());
-            buttonPanel.setBackground(BACKGROUND_COLOR);
-            buttonPanel.add(closeButton);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, 
+                "Error loading pending transactions: " + e.getMessage(), 
+                "Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Shows a popup window with the largest balances
+     */
+    private void showRichListPopup() {
+        try {
+            List<RichList.Holder> holders = RichList.top(RichList.K);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < holders.size(); i++) {
+                RichList.Holder holder = holders.get(i);
+                sb.append(i + 1).append(". ").append(holder.name).append("  ")
+                    .append(holder.wallet).append("  ").append(holder.balance).append('\n');
+            }
             
-            popup.add(scrollPane, BorderLayout.CENTER);
-            popup.add(buttonPanel, BorderLayout.SOUTH);
-            popup.setSize(600, 400);
-            popup.setLocationRelativeTo(this);
-            popup.setVisible(true);
+            showTextPopup("Top " + RichList.K + " Holders", "Balances",
+                sb.length() == 0 ? "No players yet" : sb.toString());
             
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, 
-                "Error loading pending transactions: " + e.getMessage(), 
+                "Error loading top holders: " + e.getMessage(), 
                 "Error", 
                 JOptionPane.ERROR_MESSAGE);
         }
     }
     
+    /**
+     * Shows a read-only text popup in the panel's style
+     */
+    private void showTextPopup(String title, String heading, String text) {
+        // Create popup dialog
+        JDialog popup = new JDialog(this, title, true);
+        popup.setLayout(new BorderLayout());
+        popup.getContentPane().setBackground(BACKGROUND_COLOR);
+        
+        // Create text area for detailed view
+        JTextArea detailArea = new JTextArea(15, 50);
+        detailArea.setBackground(FIELD_COLOR);
+        detailArea.setForeground(TEXT_COLOR);
+        detailArea.setFont(new Font("Consolas", Font.PLAIN, 11));
+        detailArea.setEditable(false);
+        detailArea.setLineWrap(true);
+        detailArea.setWrapStyleWord(true);
+        detailArea.setText(text);
+        
+        JScrollPane scrollPane = new JScrollPane(detailArea);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(
+            BorderFactory.createLineBorder(ACCENT_COLOR),
+            heading,
+            TitledBorder.LEFT,
+            TitledBorder.TOP,
+            new Font("Segoe UI", Font.BOLD, 12),
+            ACCENT_COLOR
+        ));
+        
+        // Create close button
+        JButton closeButton = createStyledButton("Close", BUTTON_COLOR);
+        closeButton.addActionListener(e -> popup.dispose());
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setBackground(BACKGROUND_COLOR);
+        buttonPanel.add(closeButton);
+        
+        popup.add(scrollPane, BorderLayout.CENTER);
+        popup.add(buttonPanel, BorderLayout.SOUTH);
+        popup.setSize(600, 400);
+        popup.setLocationRelativeTo(this);
+        popup.setVisible(true);
+    }
+    
     /**
      * Arranges components in the main panel with improved layout
      */
@@ -363,7 +395,8 @@ public class TxPanelB extends JFrame implements ActionListener {
         addSection("Player Information", new JComponent[][] {
             {walletLabel, walletArea},
             {balanceLabel, balanceArea},
-            {txSentLabel, txSentArea}
+            {txSentLabel, txSentArea},
+            {new JLabel(""), richListButton}
         });
         
         // Transaction panel section
@@ -466,6 +499,8 @@ public class TxPanelB extends JFrame implements ActionListener {
                 handleExit();
             } else if (e.getSource() == pendingTxsButton) {
                 showPendingTransactionsPopup();
+            } else if (e.getSource() == richListButton) {
+                showRichListPopup();
             }
         } catch (IOException ex) {
             System.err.println("Error handling action: " + ex.getMessage());
@@ -595,90 +630,62 @@ public class TxPanelB extends JFrame implements ActionListener {
             return -1;
         }
         
-        try (BufferedReader reader = Files.newBufferedReader(playerInfoPath)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(playerName)) {
-                    reader.readLine(); // Skip wallet address
-                    reader.readLine(); // Skip balance
-                    String txCountStr = reader.readLine();
-                    return Integer.parseInt(txCountStr);
-                }
-            }
-        }
-        return -1;
+        PlayerStateStore.Player player = PlayerStateStore.byName(playerName);
+        return player != null ? Integer.parseInt(player.txNum) : -1;
     }
     
     private void generateHashBasedOnTxCount(int txCount) throws IOException {
-        try {
-            String firstBlock = Files.readString(firstBlockPath);
-            String privateKey = Files.readString(privateKeyPath);
-            
-            int remainder = txCount % BATCH_SIZE;
-            int batch = txCount / BATCH_SIZE;
-            
-            if (remainder != 0) {
-                generateHashWithRemainder(firstBlock, privateKey, batch, remainder);
-            } else if (txCount == 0) {
-                generateFirstTransactionHash(firstBlock, privateKey);
-            } else {
-                generateBatchTransactionHash(firstBlock, privateKey, batch);
-            }
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("SHA-256 algorithm not available: " + e.getMessage());
+        String firstBlock = Files.readString(firstBlockPath);
+        String privateKey = Files.readString(privateKeyPath);
+        
+        int remainder = txCount % BATCH_SIZE;
+        int batch = txCount / BATCH_SIZE;
+        
+        if (remainder != 0) {
+            generateHashWithRemainder(firstBlock, privateKey, batch, remainder);
+        } else if (txCount == 0) {
+            generateFirstTransactionHash(firstBlock, privateKey);
+        } else {
+            generateBatchTransactionHash(firstBlock, privateKey, batch);
         }
     }
     
-    private void generateHashWithRemainder(String firstBlock, String privateKey, int batch, int remainder) 
-            throws NoSuchAlgorithmException {
+    private void generateHashWithRemainder(String firstBlock, String privateKey, int batch, int remainder) {
         remainder++;
         int iterations = HASH_ITERATIONS - remainder;
         
-        String combined = batch == 0 ? firstBlock + privateKey : firstBlock + privateKey + batch;
-        
-        String hash = combined;
-        for (int i = 1; i <= iterations; i++) {
-            hash = toHexString(getSHA256(hash));
-        }
-        currentTxHash = hash;
+        // Served from the pebbled chain store instead of rewalking from the seed
+        currentTxHash = WalletChainStore.link(firstBlock, privateKey, batch, iterations);
     }
     
-    private void generateFirstTransactionHash(String firstBlock, String privateKey) throws NoSuchAlgorithmException {
-        String combined = firstBlock + privateKey;
-        String hash = combined;
-        
-        for (int i = 1; i <= 2001; i++) {
-            hash = toHexString(getSHA256(hash));
-        }
-        currentTxHash = hash;
+    private void generateFirstTransactionHash(String firstBlock, String privateKey) {
+        currentTxHash = WalletChainStore.link(firstBlock, privateKey, 0, 2001);
     }
     
-    private void generateBatchTransactionHash(String firstBlock, String privateKey, int batch) 
-            throws NoSuchAlgorithmException {
-        int lastBatch = batch - 1;
-        String transitionCombined = lastBatch == 0 ? 
-            firstBlock + privateKey : 
-            firstBlock + privateKey + lastBatch;
-        
-        String transHash = transitionCombined;
-        for (int i = 1; i <= 1001; i++) {
-            transHash = toHexString(getSHA256(transHash));
-        }
-        currentTransHash = transHash;
-        
-        String publicKeyCombined = firstBlock + privateKey + batch;
-        String publicKeyHash = publicKeyCombined;
-        for (int i = 1; i <= HASH_ITERATIONS; i++) {
-            publicKeyHash = toHexString(getSHA256(publicKeyHash));
-        }
-        currentNewPublicKey = publicKeyHash;
+    private void generateBatchTransactionHash(String firstBlock, String privateKey, int batch) {
+        currentTransHash = WalletChainStore.link(firstBlock, privateKey, batch - 1, 1001);
         
-        String txCombined = firstBlock + privateKey + batch;
-        String txHash = txCombined;
-        for (int i = 1; i <= 2001; i++) {
-            txHash = toHexString(getSHA256(txHash));
+        // The new public key is one link past the first tx hash of the new batch
+        currentTxHash = WalletChainStore.link(firstBlock, privateKey, batch, 2001);
+        currentNewPublicKey = HashChain.iterateHex(currentTxHash, 1);
+    }
+    
+    /**
+     * Starts walking the chain links for the player's next transaction in the background
+     */
+    private void prefetchWalletChain() {
+        try {
+            if (playerName == null || playerName.isEmpty() || !Files.exists(firstBlockPath)
+                    || !Files.exists(privateKeyPath)) {
+                return;
+            }
+            int txCount = getPlayerTransactionCount(playerName);
+            if (txCount >= 0) {
+                WalletChainStore.prefetch(Files.readString(firstBlockPath), Files.readString(privateKeyPath), txCount);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error prefetching wallet chain: " + e.getMessage());
         }
-        currentTxHash = txHash;
     }
     
     private void buildTransactionString() throws IOException {
@@ -739,20 +746,11 @@ public class TxPanelB extends JFrame implements ActionListener {
             return;
         }
         
-        try (BufferedReader reader = Files.newBufferedReader(playerInfoPath)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(playerName)) {
-                    String walletAddress = reader.readLine();
-                    String balance = reader.readLine();
-                    String txCount = reader.readLine();
-                    
-                    Files.writeString(playerWalletPath, walletAddress, StandardCharsets.UTF_8);
-                    Files.writeString(playerBalancePath, balance, StandardCharsets.UTF_8);
-                    Files.writeString(playerTxSentPath, txCount, StandardCharsets.UTF_8);
-                    return;
-                }
-            }
+        PlayerStateStore.Player player = PlayerStateStore.byName(playerName);
+        if (player != null) {
+            Files.writeString(playerWalletPath, player.wallet, StandardCharsets.UTF_8);
+            Files.writeString(playerBalancePath, player.balance, StandardCharsets.UTF_8);
+            Files.writeString(playerTxSentPath, player.txNum, StandardCharsets.UTF_8);
         }
     }
     
@@ -763,19 +761,4 @@ public class TxPanelB extends JFrame implements ActionListener {
             System.err.println("Error clearing tx panel log: " + e.getMessage());
         }
     }
-    
-    private static byte[] getSHA256(String input) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        return md.digest(input.getBytes(StandardCharsets.UTF_8));
-    }
-    
-    private static String toHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        
-        while (hexString.length() < HASH_LENGTH) {
-            hexString.insert(0, '0');
-        }
-        return hexString.toString();
-    }
 }
\ No newline at end of file
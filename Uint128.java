@@ -0,0 +1,193 @@
+import java.math.BigInteger;
+
+/**
+ * Immutable unsigned 128-bit integer for balances, amounts and gas.
+ *
+ * The total supply (21M blocks at no more than 1e14 units each) overflows a long
+ * but is far below 2^128, so two longs cover every real balance without the
+ * allocation and generality of BigInteger. Parsing reads decimal digits straight
+ * out of a CharSequence range, add and subtract throw ArithmeticException instead
+ * of wrapping, and callers fall back to BigInteger for values that don't fit
+ * (negative, signed or oversized text) so results stay exactly as before.
+ */
+public final class Uint128 implements Comparable<Uint128> {
+
+    public static final Uint128 ZERO = new Uint128(0, 0);
+
+    private static final long CHUNK = 1_000_000_000_000_000_000L; // 10^18
+    private static final int CHUNK_DIGITS = 18;
+    private static final long[] POWERS = new long[CHUNK_DIGITS + 1];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final long hi;
+    private final long lo;
+
+    private Uint128(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    public static Uint128 valueOf(long value) {
+        if (value < 0) {
+            throw new ArithmeticException("Negative amount: " + value);
+        }
+        return value == 0 ? ZERO : new Uint128(0, value);
+    }
+
+    public static Uint128 parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses the decimal digits text[from, to). Leading zeros are accepted; signs,
+     * other characters, an empty range and values of 2^128 or more are not.
+     */
+    public static Uint128 parse(CharSequence text, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("Empty amount");
+        }
+
+        long hi = 0;
+        long lo = 0;
+        int i = from;
+        while (i < to) {
+            int end = Math.min(to, i + CHUNK_DIGITS);
+            long chunk = 0;
+            for (int j = i; j < end; j++) {
+                int digit = text.charAt(j) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a decimal amount: " + text.subSequence(from, to));
+                }
+                chunk = chunk * 10 + digit;
+            }
+
+            // (hi, lo) = (hi, lo) * 10^n + chunk
+            long m = POWERS[end - i];
+            long loHigh = unsignedMultiplyHigh(lo, m);
+            long newLo = lo * m;
+            long newHi = hi * m;
+            if (unsignedMultiplyHigh(hi, m) != 0) {
+                throw new NumberFormatException("Amount exceeds 128 bits");
+            }
+            newHi += loHigh;
+            if (Long.compareUnsigned(newHi, loHigh) < 0) {
+                throw new NumberFormatException("Amount exceeds 128 bits");
+            }
+            long sum = newLo + chunk;
+            if (Long.compareUnsigned(sum, newLo) < 0) {
+                newHi++;
+                if (newHi == 0) {
+                    throw new NumberFormatException("Amount exceeds 128 bits");
+                }
+            }
+            hi = newHi;
+            lo = sum;
+            i = end;
+        }
+        return hi == 0 && lo == 0 ? ZERO : new Uint128(hi, lo);
+    }
+
+    public Uint128 add(Uint128 other) {
+        long sumLo = lo + other.lo;
+        long carry = Long.compareUnsigned(sumLo, lo) < 0 ? 1 : 0;
+        long highs = hi + other.hi;
+        long sumHi = highs + carry;
+        if (Long.compareUnsigned(highs, hi) < 0 || (carry == 1 && sumHi == 0)) {
+            throw new ArithmeticException("Amount overflow");
+        }
+        return new Uint128(sumHi, sumLo);
+    }
+
+    public Uint128 subtract(Uint128 other) {
+        if (compareTo(other) < 0) {
+            throw new ArithmeticException("Amount underflow");
+        }
+        long diffLo = lo - other.lo;
+        long borrow = Long.compareUnsigned(lo, other.lo) < 0 ? 1 : 0;
+        return new Uint128(hi - other.hi - borrow, diffLo);
+    }
+
+    public boolean isZero() {
+        return hi == 0 && lo == 0;
+    }
+
+    @Override
+    public int compareTo(Uint128 other) {
+        int cmp = Long.compareUnsigned(hi, other.hi);
+        return cmp != 0 ? cmp : Long.compareUnsigned(lo, other.lo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Uint128)) {
+            return false;
+        }
+        Uint128 other = (Uint128) o;
+        return hi == other.hi && lo == other.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hi) * 31 + Long.hashCode(lo);
+    }
+
+    public BigInteger toBigInteger() {
+        BigInteger high = new BigInteger(Long.toUnsignedString(hi)).shiftLeft(64);
+        return high.add(new BigInteger(Long.toUnsignedString(lo)));
+    }
+
+    /**
+     * Appends the decimal form, the same text BigInteger.toString() gives
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        if (hi == 0) {
+            return sb.append(Long.toUnsignedString(lo));
+        }
+
+        // Peel off 18-digit chunks, least significant first; at most three are needed
+        long[] chunks = new long[3];
+        int count = 0;
+        long h = hi;
+        long l = lo;
+        while (h != 0) {
+            long rem = Long.remainderUnsigned(h, CHUNK);
+            h = Long.divideUnsigned(h, CHUNK);
+            long q = 0;
+            for (int bit = 63; bit >= 0; bit--) {
+                rem = (rem << 1) | ((l >>> bit) & 1);
+                q <<= 1;
+                if (rem >= CHUNK) {
+                    rem -= CHUNK;
+                    q |= 1;
+                }
+            }
+            chunks[count++] = rem;
+            l = q;
+        }
+
+        sb.append(Long.toUnsignedString(l));
+        for (int i = count - 1; i >= 0; i--) {
+            String digits = Long.toString(chunks[i]);
+            for (int pad = digits.length(); pad < CHUNK_DIGITS; pad++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(39)).toString();
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+}
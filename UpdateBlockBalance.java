@@ -3,22 +3,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
-import java.math.BigInteger;
 
 public class UpdateBlockBalance {
     
     // Reward amounts for different block ranges
-    private static final BigInteger[] REWARDS = {
-        new BigInteger("100000000000000"),  // Blocks 0-2100000
-        new BigInteger("50000000000000"),   // Blocks 2100001-4200000  
-        new BigInteger("25000000000000"),   // Blocks 4200001-6300000
-        new BigInteger("12500000000000"),   // Blocks 6300001-8400000
-        new BigInteger("6250000000000"),    // Blocks 8400001-10500000
-        new BigInteger("3125000000000"),    // Blocks 10500001-12600000
-        new BigInteger("1562500000000"),    // Blocks 12600001-14700000
-        new BigInteger("781250000000"),     // Blocks 14700001-16800000
-        new BigInteger("390625000000"),     // Blocks 16800001-18900000
-        new BigInteger("195312500000")      // Blocks 18900001-21000000
+    private static final Uint128[] REWARDS = {
+        Uint128.parse("100000000000000"),  // Blocks 0-2100000
+        Uint128.parse("50000000000000"),   // Blocks 2100001-4200000  
+        Uint128.parse("25000000000000"),   // Blocks 4200001-6300000
+        Uint128.parse("12500000000000"),   // Blocks 6300001-8400000
+        Uint128.parse("6250000000000"),    // Blocks 8400001-10500000
+        Uint128.parse("3125000000000"),    // Blocks 10500001-12600000
+        Uint128.parse("1562500000000"),    // Blocks 12600001-14700000
+        Uint128.parse("781250000000"),     // Blocks 14700001-16800000
+        Uint128.parse("390625000000"),     // Blocks 16800001-18900000
+        Uint128.parse("195312500000")      // Blocks 18900001-21000000
     };
     
     // Block range boundaries
@@ -28,7 +27,6 @@ public class UpdateBlockBalance {
     };
     
     // File paths
-    private static final Path PLAYER_INFO_PATH = Paths.get("ledger_KMC/player_info.log");
     private static final Path LAST_PLAYER_PATH = Paths.get("Program_Files/lastplayerledger.log");
     private static final Path LAST_BLOCK_PATH = Paths.get("Program_Files/lastblockledger.log");
     private static final Path LAST_HASH_PATH = Paths.get("Program_Files/lastblockhash.log");
@@ -63,12 +61,11 @@ public class UpdateBlockBalance {
      * @throws IOException if file operations fail
      */
     private PlayerData loadPlayerData() throws IOException {
-        String playerInfoContent = Files.readString(PLAYER_INFO_PATH);
         String playerWithPrefix = Files.readString(LAST_PLAYER_PATH);
         String player = playerWithPrefix.substring(1); // Remove first character
         String hash = Files.readString(LAST_HASH_PATH);
         
-        return new PlayerData(playerInfoContent, player.trim(), hash);
+        return new PlayerData(player.trim(), hash);
     }
     
     /**
@@ -93,43 +90,26 @@ public class UpdateBlockBalance {
      * @throws IOException if file operations fail
      */
     private boolean updateExistingPlayer(PlayerData playerData, BlockData blockData) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PLAYER_INFO_PATH.toFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.equals(playerData.playerName)) {
-                    String wallet = reader.readLine();
-                    String balance = reader.readLine();
-                    
-                    BigInteger currentBalance = new BigInteger(balance);
-                    BigInteger reward = calculateReward(blockData.blockNumber);
-                    BigInteger newBalance = currentBalance.add(reward);
-                    
-                    updatePlayerFile(playerData, wallet, balance, newBalance);
-                    return true;
-                }
-            }
+        PlayerStateStore.Player player = PlayerStateStore.byName(playerData.playerName);
+        if (player == null) {
+            return false;
         }
-        return false;
+        
+        Uint128 reward = calculateReward(blockData.blockNumber);
+        
+        updatePlayerFile(playerData, reward);
+        return true;
     }
     
     /**
-     * Updates the player info file with new balance
+     * Credits the block reward in the player state store; it is netted with the
+     * block's transactions and committed once the whole block has been applied
      * @param playerData player information
-     * @param wallet player's wallet
-     * @param oldBalance old balance as string
-     * @param newBalance new balance as BigInteger
-     * @throws IOException if file operations fail
+     * @param reward reward for this block
      */
-    private void updatePlayerFile(PlayerData playerData, String wallet, String oldBalance, BigInteger newBalance) throws IOException {
-        String oldEntry = playerData.playerName + "\n" + wallet + "\n" + oldBalance;
-        String newEntry = playerData.playerName + "\n" + wallet + "\n" + newBalance;
-        
+    private void updatePlayerFile(PlayerData playerData, Uint128 reward) {
         try {
-            String updatedContent = playerData.fileContent.replaceAll(
-                java.util.regex.Pattern.quote(oldEntry), 
-                java.util.regex.Matcher.quoteReplacement(newEntry)
-            );
-            Files.writeString(PLAYER_INFO_PATH, updatedContent, StandardCharsets.UTF_8);
+            PlayerStateStore.credit(playerData.playerName, reward);
         } catch (Exception e) {
             System.err.println("Error updating player file: " + e.getMessage());
         }
@@ -146,16 +126,10 @@ public class UpdateBlockBalance {
             return; // Skip if no hash provided
         }
         
-        BigInteger reward = calculateReward(blockData.blockNumber);
+        Uint128 reward = calculateReward(blockData.blockNumber);
         
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(PLAYER_INFO_PATH.toFile(), true))) {
-            writer.write(playerData.playerName + "\n");
-            writer.write("@" + blockData.blockNumberStr + "\n");
-            writer.write(reward + "\n");
-            writer.write("0\n");
-            writer.write("0\n");
-            writer.write(playerData.hash.replaceAll(" ", "") + "\n");
-        }
+        PlayerStateStore.addPlayer(playerData.playerName, "@" + blockData.blockNumberStr, reward.toString(),
+                "0", "0", playerData.hash.replaceAll(" ", ""));
         
         writeFirstBlock(blockData.blockContent);
     }
@@ -165,13 +139,13 @@ public class UpdateBlockBalance {
      * @param blockNumber the block number
      * @return the reward amount
      */
-    private BigInteger calculateReward(int blockNumber) {
+    private Uint128 calculateReward(int blockNumber) {
         for (int i = 0; i < BLOCK_BOUNDARIES.length; i++) {
             if (blockNumber < BLOCK_BOUNDARIES[i]) {
                 return REWARDS[i];
             }
         }
-        return BigInteger.ZERO; // No reward for blocks beyond the last boundary
+        return Uint128.ZERO; // No reward for blocks beyond the last boundary
     }
     
     /**
@@ -187,12 +161,10 @@ public class UpdateBlockBalance {
      * Inner class to hold player data
      */
     private static class PlayerData {
-        final String fileContent;
         final String playerName;
         final String hash;
         
-        PlayerData(String fileContent, String playerName, String hash) {
-            this.fileContent = fileContent;
+        PlayerData(String playerName, String hash) {
             this.playerName = playerName;
             this.hash = hash;
         }
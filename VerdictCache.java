@@ -0,0 +1,65 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of proof verdicts that outlives a single ProcessTxs run.
+ *
+ * CheckC and BlockchainSyncChecker re-queue a consensus block's transactions
+ * into latestTxs.log under a fake "[00:00:00] ... <name>" prefix, so entries are
+ * keyed by a digest of the transaction body after the "> " marker. A verdict is
+ * only valid for the sender state it was checked against, so each entry also
+ * keeps the txNum and public key from player_info.log and only answers when both
+ * still match. After player_info.log is rolled back a block the
+ * sender is back at the state the transaction was first verified against, which
+ * is exactly when a resync wants the verdict again; any other state misses.
+ */
+public class VerdictCache {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private static final Map<String, Verdict> ENTRIES = new LinkedHashMap<String, Verdict>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Verdict> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private VerdictCache() {
+    }
+
+    /**
+     * Digest of the transaction body with the chat prefix and line ending stripped
+     */
+    public static String bodyKey(String line) {
+        int nameEnd = line.indexOf("> ");
+        String body = nameEnd == -1 ? line : line.substring(nameEnd + 2);
+        return HashChain.sha256Hex(body.strip());
+    }
+
+    /**
+     * Cached verdict for the body checked against this txNum and public key, or null
+     */
+    public static synchronized Verdict lookup(String bodyKey, int txNum, String publicKey) {
+        Verdict verdict = ENTRIES.get(bodyKey);
+        if (verdict != null && verdict.txNum == txNum && verdict.publicKey.equals(publicKey)) {
+            return verdict;
+        }
+        return null;
+    }
+
+    public static synchronized void record(String bodyKey, int txNum, String publicKey, boolean accepted) {
+        ENTRIES.put(bodyKey, new Verdict(txNum, publicKey, accepted));
+    }
+
+    public static class Verdict {
+        final int txNum;
+        final String publicKey;
+        public final boolean accepted;
+
+        Verdict(int txNum, String publicKey, boolean accepted) {
+            this.txNum = txNum;
+            this.publicKey = publicKey;
+            this.accepted = accepted;
+        }
+    }
+}
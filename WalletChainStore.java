@@ -0,0 +1,240 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Pebbled storage of the wallet hash chains TxPanelB signs transactions with.
+ *
+ * Each 1000-transaction batch uses one 2002-link chain seeded with
+ * firstBlock + privateKey (+ batch), and its links are revealed in reverse:
+ * 2002, 2001, 2000 ... 1001. Instead of rewalking from the seed for every
+ * transaction, the store keeps checkpoints ("pebbles") on each chain. A lookup
+ * walks up from the nearest pebble below the wanted link, dropping a new pebble
+ * halfway across each remaining gap, so revealing the whole chain backwards
+ * costs O(log n) hashes per link amortized with a logarithmic number of pebbles
+ * (binary pebbling, the simple form of Jakobsson's fractal traversal).
+ *
+ * The chain for the next batch is started in the background, and all pebbles
+ * are saved AES-GCM encrypted under a key derived from privatekey.txt.
+ */
+public class WalletChainStore {
+
+    private static final int CHAIN_LENGTH = 2002;
+    private static final int BATCH_SIZE = 1000;
+    private static final Path STORE_PATH = Paths.get("privatekey_chains.dat");
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "wallet-chain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static Map<Integer, Chain> chains;
+    private static String loadedKey;
+
+    private WalletChainStore() {
+    }
+
+    /**
+     * Returns link number position (1..2002) of the given batch's chain,
+     * i.e. HashChain.iterate(seed, position)
+     */
+    public static synchronized String link(String firstBlock, String privateKey, int batch, int position) {
+        load(privateKey);
+
+        String seed = seed(firstBlock, privateKey, batch);
+        String seedDigest = HashChain.sha256Hex(seed);
+        Chain chain = chains.get(batch);
+        if (chain == null || !chain.seedDigest.equals(seedDigest)) {
+            chain = new Chain(seedDigest, HashChain.iterate(seed, 1));
+            chains.put(batch, chain);
+        }
+
+        String hash = chain.reveal(position);
+        evictAround(batch);
+        save(privateKey);
+        startNext(firstBlock, privateKey, batch + 1);
+        return hash;
+    }
+
+    /**
+     * Warms the chain links the next transaction at txNum will need, in the background
+     */
+    public static void prefetch(String firstBlock, String privateKey, int txNum) {
+        EXECUTOR.submit(() -> {
+            int batch = txNum / BATCH_SIZE;
+            int remainder = txNum % BATCH_SIZE;
+            if (remainder != 0) {
+                link(firstBlock, privateKey, batch, CHAIN_LENGTH - 1 - remainder);
+            } else if (txNum == 0) {
+                link(firstBlock, privateKey, 0, CHAIN_LENGTH - 1);
+            } else {
+                link(firstBlock, privateKey, batch - 1, BATCH_SIZE + 1);
+                link(firstBlock, privateKey, batch, CHAIN_LENGTH - 1);
+            }
+        });
+    }
+
+    /**
+     * Seeds a batch's chain and walks it to its top link ahead of time
+     */
+    private static void startNext(String firstBlock, String privateKey, int batch) {
+        if (chains.containsKey(batch)) {
+            return;
+        }
+        EXECUTOR.submit(() -> {
+            synchronized (WalletChainStore.class) {
+                if (chains.containsKey(batch)) {
+                    return;
+                }
+            }
+            long start = System.nanoTime();
+            String seed = seed(firstBlock, privateKey, batch);
+            Chain chain = new Chain(HashChain.sha256Hex(seed), HashChain.iterate(seed, 1));
+            chain.reveal(CHAIN_LENGTH);
+
+            synchronized (WalletChainStore.class) {
+                if (!chains.containsKey(batch)) {
+                    chains.put(batch, chain);
+                    save(privateKey);
+                    System.out.println("Wallet chain for batch " + batch + " precomputed in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }
+            }
+        });
+    }
+
+    private static String seed(String firstBlock, String privateKey, int batch) {
+        return batch == 0 ? firstBlock + privateKey : firstBlock + privateKey + batch;
+    }
+
+    /**
+     * Only the previous, current and next batch chains are ever asked for
+     */
+    private static void evictAround(int batch) {
+        Iterator<Integer> it = chains.keySet().iterator();
+        while (it.hasNext()) {
+            int b = it.next();
+            if (b < batch - 1 || b > batch + 1) {
+                it.remove();
+            }
+        }
+    }
+
+    // ---- encrypted persistence ----
+
+    private static void load(String privateKey) {
+        if (chains != null && privateKey.equals(loadedKey)) {
+            return;
+        }
+        chains = new HashMap<>();
+        loadedKey = privateKey;
+        if (!Files.exists(STORE_PATH)) {
+            return;
+        }
+
+        try {
+            byte[] sealed = Files.readAllBytes(STORE_PATH);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, storeKey(privateKey), new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+            String plain = new String(cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES), StandardCharsets.UTF_8);
+
+            for (String line : plain.split("\n")) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2) {
+                    continue;
+                }
+                Chain chain = new Chain(parts[1]);
+                for (int i = 2; i < parts.length; i++) {
+                    int colon = parts[i].indexOf(':');
+                    chain.pebbles.put(Integer.parseInt(parts[i].substring(0, colon)), parts[i].substring(colon + 1));
+                }
+                if (chain.pebbles.containsKey(1)) {
+                    chains.put(Integer.parseInt(parts[0]), chain);
+                }
+            }
+        } catch (Exception e) {
+            // Written under another key or damaged; the chains are simply rebuilt
+            System.err.println("Discarding wallet chain store: " + e.getMessage());
+            chains.clear();
+        }
+    }
+
+    private static void save(String privateKey) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, Chain> entry : chains.entrySet()) {
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().seedDigest);
+            for (Map.Entry<Integer, String> pebble : entry.getValue().pebbles.entrySet()) {
+                sb.append(' ').append(pebble.getKey()).append(':').append(pebble.getValue());
+            }
+            sb.append('\n');
+        }
+
+        try {
+            byte[] iv = new byte[IV_BYTES];
+            new SecureRandom().nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, storeKey(privateKey), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] body = cipher.doFinal(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            byte[] sealed = new byte[IV_BYTES + body.length];
+            System.arraycopy(iv, 0, sealed, 0, IV_BYTES);
+            System.arraycopy(body, 0, sealed, IV_BYTES, body.length);
+            Files.write(STORE_PATH, sealed);
+        } catch (Exception e) {
+            System.err.println("Error saving wallet chain store: " + e.getMessage());
+        }
+    }
+
+    private static SecretKeySpec storeKey(String privateKey) throws GeneralSecurityException {
+        return new SecretKeySpec(HashChain.sha256("KMC wallet chain store\n" + privateKey), "AES");
+    }
+
+    /**
+     * One batch chain: pebble position -> link hash. Position 1 is never dropped.
+     */
+    private static class Chain {
+        final String seedDigest;
+        final TreeMap<Integer, String> pebbles = new TreeMap<>();
+
+        Chain(String seedDigest) {
+            this.seedDigest = seedDigest;
+        }
+
+        Chain(String seedDigest, String firstLink) {
+            this(seedDigest);
+            pebbles.put(1, firstLink);
+        }
+
+        String reveal(int position) {
+            Map.Entry<Integer, String> floor = pebbles.floorEntry(position);
+            int at = floor.getKey();
+            String hash = floor.getValue();
+
+            while (at < position) {
+                int next = at + Math.max(1, (position - at) / 2);
+                hash = HashChain.iterateHex(hash, next - at);
+                at = next;
+                pebbles.put(at, hash);
+            }
+
+            // Links are revealed top-down, so pebbles above this one are spent
+            pebbles.tailMap(position, false).clear();
+            return hash;
+        }
+    }
+}
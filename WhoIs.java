@@ -5,9 +5,6 @@ import java.nio.file.Paths;
 import java.util.stream.Stream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardOpenOption;
-import java.security.NoSuchAlgorithmException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.awt.event.KeyEvent;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
@@ -18,7 +15,6 @@ import java.util.regex.Pattern;
 public class WhoIs {
     
     private final String userDirectory = System.getProperty("user.home");
-    private static final int HASH_ITERATIONS = 2002;
     private static final int HASH_LENGTH = 64;
     private static final int WAIT_MAIN = 7000;
     private static final int WAIT_BLOCK = 5500;
@@ -75,35 +71,13 @@ public class WhoIs {
             String privateKeyContent = Files.readString(privateKeyPath);
             String combinedContent = blockLedgerContent + privateKeyContent;
             
-            String hashedContent = combinedContent;
-            for (int i = 1; i <= HASH_ITERATIONS; i++) {
-                hashedContent = toHexString(getSHA(hashedContent));
-                
-                if (i == HASH_ITERATIONS) {
-                    Files.writeString(blockHashPath, hashedContent);
-                }
-            }
-        } catch (NoSuchAlgorithmException e) {
-            System.out.println("Exception thrown for incorrect algorithm: " + e);
+            String hashedContent = BlockSignaturePrecomputer.take(combinedContent);
+            Files.writeString(blockHashPath, hashedContent);
         } catch (IOException e) {
             System.out.println("Exception thrown for IO: " + e);
         }
     }
     
-    private static String toHexString(byte[] hash) {
-        BigInteger number = new BigInteger(1, hash);
-        StringBuilder hexString = new StringBuilder(number.toString(16));
-        while (hexString.length() < HASH_LENGTH) {
-            hexString.insert(0, '0');
-        }
-        return hexString.toString();
-    }
-    
-    private static byte[] getSHA(String input) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        return md.digest(input.getBytes(StandardCharsets.UTF_8));
-    }
-    
     private void processBlock() throws InterruptedException, AWTException, FileNotFoundException, IOException {
         Path blockHashPath = Paths.get("Program_Files/lastblockhash.log");
         String blockHashContent = Files.readString(blockHashPath);